@@ -0,0 +1,34 @@
+package com.bfs.hibernateprojectdemo.config;
+
+import com.bfs.hibernateprojectdemo.domain.AuditLog;
+import com.bfs.hibernateprojectdemo.service.AuditLogService;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+// GET /actuator/audit, GET /actuator/audit/{resourceType}/{resourceId}
+@Component
+@Endpoint(id = "audit")
+public class AuditEndpoint {
+
+    private final AuditLogService auditLogService;
+
+    public AuditEndpoint(AuditLogService auditLogService) {
+        this.auditLogService = auditLogService;
+    }
+
+    @ReadOperation
+    public Map<String, Object> audit() {
+        return auditLogService.snapshot();
+    }
+
+    // Entries for one resource still held by the sink, i.e. not yet in audit_log
+    @ReadOperation
+    public List<AuditLog> local(@Selector String resourceType, @Selector Long resourceId) {
+        return auditLogService.findLocal(resourceType, resourceId, null);
+    }
+}
@@ -0,0 +1,25 @@
+package com.bfs.hibernateprojectdemo.config;
+
+import com.bfs.hibernateprojectdemo.service.ProductCatalogCache;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+// GET /actuator/catalogcache
+@Component
+@Endpoint(id = "catalogcache")
+public class CatalogCacheEndpoint {
+
+    private final ProductCatalogCache productCatalogCache;
+
+    public CatalogCacheEndpoint(ProductCatalogCache productCatalogCache) {
+        this.productCatalogCache = productCatalogCache;
+    }
+
+    @ReadOperation
+    public Map<String, Object> cache() {
+        return productCatalogCache.snapshot();
+    }
+}
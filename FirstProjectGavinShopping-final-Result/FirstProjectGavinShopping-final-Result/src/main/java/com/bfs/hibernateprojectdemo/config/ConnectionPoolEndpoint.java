@@ -0,0 +1,24 @@
+package com.bfs.hibernateprojectdemo.config;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+// GET /actuator/connectionpool
+@Component
+@Endpoint(id = "connectionpool")
+public class ConnectionPoolEndpoint {
+
+    private final ConnectionPoolMetrics connectionPoolMetrics;
+
+    public ConnectionPoolEndpoint(ConnectionPoolMetrics connectionPoolMetrics) {
+        this.connectionPoolMetrics = connectionPoolMetrics;
+    }
+
+    @ReadOperation
+    public Map<String, Object> pool() {
+        return connectionPoolMetrics.snapshot();
+    }
+}
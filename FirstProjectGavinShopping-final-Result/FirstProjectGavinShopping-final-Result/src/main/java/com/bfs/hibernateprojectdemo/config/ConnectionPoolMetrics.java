@@ -0,0 +1,76 @@
+package com.bfs.hibernateprojectdemo.config;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects HikariCP pool statistics and connection acquire timings for the connectionpool endpoint.
+ */
+public class ConnectionPoolMetrics implements MetricsTrackerFactory {
+
+    private final LongAdder acquireCount = new LongAdder();
+    private final LongAdder acquireNanosTotal = new LongAdder();
+    private final LongAccumulator acquireNanosMax = new LongAccumulator(Math::max, 0L);
+    private final LongAdder usageMillisTotal = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder created = new LongAdder();
+
+    private volatile PoolStats poolStats;
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        this.poolStats = poolStats;
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+                created.increment();
+            }
+
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                acquireCount.increment();
+                acquireNanosTotal.add(elapsedAcquiredNanos);
+                acquireNanosMax.accumulate(elapsedAcquiredNanos);
+            }
+
+            @Override
+            public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+                usageMillisTotal.add(elapsedBorrowedMillis);
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                timeouts.increment();
+            }
+        };
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        PoolStats stats = poolStats;
+        if (stats != null) {
+            out.put("active", stats.getActiveConnections());
+            out.put("idle", stats.getIdleConnections());
+            out.put("pending", stats.getPendingThreads());
+            out.put("total", stats.getTotalConnections());
+            out.put("max", stats.getMaxConnections());
+            out.put("min", stats.getMinConnections());
+        }
+        long acquires = acquireCount.sum();
+        out.put("acquireCount", acquires);
+        out.put("acquireTimeAvgMicros", acquires == 0 ? 0 :
+                TimeUnit.NANOSECONDS.toMicros(acquireNanosTotal.sum() / acquires));
+        out.put("acquireTimeMaxMicros", TimeUnit.NANOSECONDS.toMicros(acquireNanosMax.get()));
+        out.put("usageTimeAvgMillis", acquires == 0 ? 0 : usageMillisTotal.sum() / acquires);
+        out.put("connectionTimeouts", timeouts.sum());
+        out.put("connectionsCreated", created.sum());
+        return out;
+    }
+}
@@ -1,9 +1,10 @@
 package com.bfs.hibernateprojectdemo.config;
 
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.jdbc.datasource.DriverManagerDataSource;
 import org.springframework.orm.hibernate5.HibernateTransactionManager;
 import org.springframework.orm.hibernate5.LocalSessionFactoryBean;
 import org.springframework.transaction.PlatformTransactionManager;
@@ -28,19 +29,51 @@ public class HibernateConfig {
         hibernateProperties.setProperty("hibernate.show_sql", hibernateProperty.getShowsql());
         hibernateProperties.setProperty("hibernate.dialect", hibernateProperty.getDialect());
         hibernateProperties.setProperty("hibernate.hbm2ddl.auto", hibernateProperty.getHbm2ddlAuto());
+        hibernateProperties.setProperty("hibernate.jdbc.batch_size", hibernateProperty.getBatchSize());
+        hibernateProperties.setProperty("hibernate.order_inserts", hibernateProperty.getOrderInserts());
+        hibernateProperties.setProperty("hibernate.order_updates", hibernateProperty.getOrderUpdates());
+        hibernateProperties.setProperty("hibernate.cache.use_second_level_cache", hibernateProperty.getUseSecondLevelCache());
+        hibernateProperties.setProperty("hibernate.cache.use_query_cache", hibernateProperty.getUseQueryCache());
+        hibernateProperties.setProperty("hibernate.cache.region.factory_class", "jcache");
+        hibernateProperties.setProperty("hibernate.javax.cache.provider", hibernateProperty.getCacheProvider());
+        hibernateProperties.setProperty("hibernate.javax.cache.missing_cache_strategy", "create");
 
         return hibernateProperties;
     }
 
+    @Bean
+    public ConnectionPoolMetrics connectionPoolMetrics() {
+        return new ConnectionPoolMetrics();
+    }
+
     @Bean
     public DataSource dataSource() {
-        DriverManagerDataSource dataSource = new DriverManagerDataSource();
-        dataSource.setDriverClassName(hibernateProperty.getDriver());
-        dataSource.setUrl(hibernateProperty.getUrl());
-        dataSource.setUsername(hibernateProperty.getUsername());
-        dataSource.setPassword(hibernateProperty.getPassword());
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("shopping-pool");
+        config.setDriverClassName(hibernateProperty.getDriver());
+        config.setJdbcUrl(hibernateProperty.getUrl());
+        config.setUsername(hibernateProperty.getUsername());
+        config.setPassword(hibernateProperty.getPassword());
+        config.setMinimumIdle(hibernateProperty.getPoolMinIdle());
+        config.setMaximumPoolSize(hibernateProperty.getPoolMaxSize());
+        config.setConnectionTimeout(hibernateProperty.getPoolConnectionTimeoutMs());
+        config.setLeakDetectionThreshold(hibernateProperty.getPoolLeakDetectionThresholdMs());
+        if (hibernateProperty.getUrl().startsWith("jdbc:mysql:")) {
+            // Client-side prepared statement cache in Connector/J, kept per pooled connection
+            config.addDataSourceProperty("cachePrepStmts", "true");
+            config.addDataSourceProperty("prepStmtCacheSize", hibernateProperty.getPrepStmtCacheSize());
+            config.addDataSourceProperty("prepStmtCacheSqlLimit", hibernateProperty.getPrepStmtCacheSqlLimit());
+            config.addDataSourceProperty("useServerPrepStmts", "true");
+            // Without this Connector/J sends each addBatch() entry as its own round trip: inserts are
+            // rewritten into one multi-row INSERT, updates go out as one multi-statement packet
+            // (per-statement update counts are kept, which InventoryService.reserveAll relies on)
+            config.addDataSourceProperty("rewriteBatchedStatements", "true");
+            // Positive fetch sizes stream through a server-side cursor instead of buffering the whole result
+            config.addDataSourceProperty("useCursorFetch", "true");
+        }
+        config.setMetricsTrackerFactory(connectionPoolMetrics());
 
-        return dataSource;
+        return new HikariDataSource(config);
     }
 //
 //    @Bean
@@ -34,6 +34,46 @@ public class HibernateProperty {
     @Value("${database.hibernate.hbm2ddl:auto:update}")
     private String hbm2ddlAuto;
 
+    // JDBC batching; only effective for entities whose ids are not IDENTITY-generated
+    @Value("${database.hibernate.batch-size:50}")
+    private String batchSize;
+
+    @Value("${database.hibernate.order-inserts:true}")
+    private String orderInserts;
+
+    @Value("${database.hibernate.order-updates:true}")
+    private String orderUpdates;
+
+    // Second-level, natural-id and query caches (JCache, Caffeine provider; see application.conf)
+    @Value("${database.hibernate.cache.second-level:true}")
+    private String useSecondLevelCache;
+
+    @Value("${database.hibernate.cache.query:true}")
+    private String useQueryCache;
+
+    @Value("${database.hibernate.cache.provider:com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider}")
+    private String cacheProvider;
+
+    // Connection pool (HikariCP)
+    @Value("${database.pool.min-idle:5}")
+    private int poolMinIdle;
+
+    @Value("${database.pool.max-size:20}")
+    private int poolMaxSize;
+
+    @Value("${database.pool.connection-timeout-ms:3000}")
+    private long poolConnectionTimeoutMs;
+
+    // 0 disables leak detection
+    @Value("${database.pool.leak-detection-threshold-ms:0}")
+    private long poolLeakDetectionThresholdMs;
+
+    @Value("${database.pool.prep-stmt-cache-size:250}")
+    private int prepStmtCacheSize;
+
+    @Value("${database.pool.prep-stmt-cache-sql-limit:2048}")
+    private int prepStmtCacheSqlLimit;
+
 
 }
 
@@ -0,0 +1,32 @@
+package com.bfs.hibernateprojectdemo.config;
+
+import com.bfs.hibernateprojectdemo.security.LoginThrottle;
+import com.bfs.hibernateprojectdemo.security.PasswordVerifier;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// GET /actuator/login
+@Component
+@Endpoint(id = "login")
+public class LoginEndpoint {
+
+    private final PasswordVerifier passwordVerifier;
+    private final LoginThrottle loginThrottle;
+
+    public LoginEndpoint(PasswordVerifier passwordVerifier, LoginThrottle loginThrottle) {
+        this.passwordVerifier = passwordVerifier;
+        this.loginThrottle = loginThrottle;
+    }
+
+    @ReadOperation
+    public Map<String, Object> login() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("passwordVerifier", passwordVerifier.snapshot());
+        out.put("throttle", loginThrottle.snapshot());
+        return out;
+    }
+}
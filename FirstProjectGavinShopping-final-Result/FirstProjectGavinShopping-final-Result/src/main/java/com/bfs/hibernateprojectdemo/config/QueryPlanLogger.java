@@ -0,0 +1,122 @@
+package com.bfs.hibernateprojectdemo.config;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Logs the database's EXPLAIN output for the hot HQL queries once the application is up
+ * (database.explain-queries=true). On MySQL, plans that scan a whole table (type=ALL) are logged
+ * as warnings so a dropped or unused index shows up at startup instead of in production latency.
+ *
+ * The queries mirror OrderController, ProductAnalyticsService, WatchlistController and the audit
+ * lookups with literal sample values, and are translated to SQL by Hibernate itself so the column
+ * names always match the mappings.
+ */
+@Component
+@ConditionalOnProperty(name = "database.explain-queries", havingValue = "true")
+public class QueryPlanLogger {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryPlanLogger.class);
+
+    private static final Map<String, String> HOT_QUERIES = new LinkedHashMap<>();
+
+    static {
+        HOT_QUERIES.put("orders.mine page",
+                "from Order o where o.userId = 1 and o.status <> 'Canceled' " +
+                        "and (o.orderTime < current_timestamp() or (o.orderTime = current_timestamp() and o.id < 1)) " +
+                        "order by o.orderTime desc, o.id desc");
+        HOT_QUERIES.put("orders.admin page",
+                "from Order o " +
+                        "where (o.orderTime < current_timestamp() or (o.orderTime = current_timestamp() and o.id < 1)) " +
+                        "order by o.orderTime desc, o.id desc");
+        HOT_QUERIES.put("orders.mine recent products",
+                "select l.productId from OrderLine l join l.order o where o.userId = 1 " +
+                        "group by l.productId order by max(o.orderTime) desc, l.productId asc");
+        HOT_QUERIES.put("orders.sold total",
+                "select coalesce(sum(l.quantity), 0) from OrderLine l join l.order o where o.status = 'Completed'");
+        HOT_QUERIES.put("analytics popular",
+                "from ProductSalesStats s order by s.units desc, s.productId asc");
+        HOT_QUERIES.put("analytics popular window",
+                "select b.productId, sum(b.orderCount), sum(b.units), sum(b.profit), max(b.lastOrderTime) " +
+                        "from ProductSalesBucket b where b.granularity = 'H' and b.bucketStart >= current_timestamp() " +
+                        "group by b.productId order by sum(b.units) desc, b.productId asc");
+        HOT_QUERIES.put("analytics window names",
+                "select b.productId, b.productName from ProductSalesBucket b " +
+                        "where b.granularity = 'H' and b.productId in (1, 2) and b.bucketStart = (" +
+                        "select max(b2.bucketStart) from ProductSalesBucket b2 where b2.granularity = 'H' " +
+                        "and b2.productId = b.productId and b2.bucketStart >= current_timestamp())");
+        HOT_QUERIES.put("watchlist entry",
+                "from Watchlist w where w.userId = 1 and w.productId = 1");
+        HOT_QUERIES.put("audit by resource",
+                "from AuditLog a where a.resourceType = 'Product' and a.resourceId = 1 " +
+                        "and (a.timestamp < current_timestamp() or (a.timestamp = current_timestamp() and a.id < 1)) " +
+                        "order by a.timestamp desc, a.id desc");
+        HOT_QUERIES.put("audit by user",
+                "from AuditLog a where a.userId = 1 " +
+                        "and (a.timestamp < current_timestamp() or (a.timestamp = current_timestamp() and a.id < 1)) " +
+                        "order by a.timestamp desc, a.id desc");
+    }
+
+    private final SessionFactory sessionFactory;
+
+    public QueryPlanLogger(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void explainHotQueries() {
+        SessionFactoryImplementor factory = sessionFactory.unwrap(SessionFactoryImplementor.class);
+        try (Session s = sessionFactory.openSession()) {
+            for (Map.Entry<String, String> q : HOT_QUERIES.entrySet()) {
+                String[] sql = factory.getQueryPlanCache()
+                        .getHQLQueryPlan(q.getValue(), false, Collections.emptyMap())
+                        .getSqlStrings();
+                for (String statement : sql) {
+                    s.doWork(connection -> {
+                        try (Statement st = connection.createStatement();
+                             ResultSet rs = st.executeQuery("EXPLAIN " + statement)) {
+                            report(q.getKey(), statement, rs);
+                        }
+                    });
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Could not explain hot queries", e);
+        }
+    }
+
+    private static void report(String name, String sql, ResultSet rs) throws java.sql.SQLException {
+        ResultSetMetaData meta = rs.getMetaData();
+        StringBuilder plan = new StringBuilder();
+        boolean fullScan = false;
+        while (rs.next()) {
+            plan.append("\n  ");
+            for (int i = 1; i <= meta.getColumnCount(); i++) {
+                String column = meta.getColumnLabel(i);
+                String value = rs.getString(i);
+                if (i > 1) plan.append(", ");
+                plan.append(column).append('=').append(value);
+                if ("type".equalsIgnoreCase(column) && "ALL".equals(value)) fullScan = true;
+            }
+        }
+        if (fullScan) {
+            log.warn("Full table scan in {}: {}{}", name, sql, plan);
+        } else {
+            log.info("Plan for {}: {}{}", name, sql, plan);
+        }
+    }
+}
@@ -49,6 +49,7 @@ public class SecurityConfig {
                 .authorizeHttpRequests()
                 .antMatchers("/signup", "/login").permitAll()
                 .antMatchers(HttpMethod.GET, "/products/**").permitAll()
+                .antMatchers("/actuator/**").hasRole("ADMIN")
                 .anyRequest().authenticated()
                 .and()
                 .sessionManagement()
@@ -0,0 +1,70 @@
+package com.bfs.hibernateprojectdemo.controller;
+
+import com.bfs.hibernateprojectdemo.security.AuthenticatedUser;
+import com.bfs.hibernateprojectdemo.security.CurrentUser;
+import com.bfs.hibernateprojectdemo.service.AuditQueryService;
+import com.bfs.hibernateprojectdemo.util.KeysetCursor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDateTime;
+
+@RestController
+@RequestMapping("/audit")
+public class AuditController {
+
+    static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final AuditQueryService auditQueryService;
+
+    public AuditController(AuditQueryService auditQueryService) {
+        this.auditQueryService = auditQueryService;
+    }
+
+    // Admin search over the whole audit trail, newest first, streamed as NDJSON
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping
+    public ResponseEntity<StreamingResponseBody> search(@RequestParam(required = false) String resourceType,
+                                    @RequestParam(required = false) Long resourceId,
+                                    @RequestParam(required = false) Long userId,
+                                    @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                    @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                                    @RequestParam(required = false) String cursor,
+                                    @RequestParam(required = false) Integer size,
+                                    @CurrentUser AuthenticatedUser currentUser) {
+        requireAdmin(currentUser);
+        AuditQueryService.Filter filter = new AuditQueryService.Filter();
+        filter.resourceType = resourceType;
+        filter.resourceId = resourceId;
+        filter.userId = userId;
+        filter.from = from;
+        filter.to = to;
+        return stream(auditQueryService, filter, cursor, size);
+    }
+
+    // Answered as 403 by GlobalExceptionHandler
+    static void requireAdmin(AuthenticatedUser currentUser) {
+        if (currentUser == null || !currentUser.isAdmin()) throw new AccessDeniedException("Admin only");
+    }
+
+    /**
+     * Checks the paging parameters before streaming starts (a bad cursor or size is a 400 via
+     * GlobalExceptionHandler); after that the status is already 200.
+     */
+    static ResponseEntity<StreamingResponseBody> stream(AuditQueryService auditQueryService,
+                                                        AuditQueryService.Filter filter,
+                                                        String cursor, Integer size) {
+        KeysetCursor after = cursor == null ? null : KeysetCursor.decode(cursor);
+        int limit = auditQueryService.pageSize(size);
+        StreamingResponseBody body = out -> auditQueryService.stream(filter, after, limit, out);
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+}
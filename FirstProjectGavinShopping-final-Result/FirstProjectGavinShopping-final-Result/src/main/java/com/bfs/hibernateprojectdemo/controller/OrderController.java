@@ -1,26 +1,37 @@
 package com.bfs.hibernateprojectdemo.controller;
 
+import com.bfs.hibernateprojectdemo.domain.IdempotencyRecord;
 import com.bfs.hibernateprojectdemo.domain.Order;
+import com.bfs.hibernateprojectdemo.domain.OrderLine;
 import com.bfs.hibernateprojectdemo.domain.Product;
-import com.bfs.hibernateprojectdemo.domain.User;
 import com.bfs.hibernateprojectdemo.service.HomePageService;
+import com.bfs.hibernateprojectdemo.service.IdempotencyService;
+import com.bfs.hibernateprojectdemo.service.InventoryService;
+import com.bfs.hibernateprojectdemo.service.ProductHeavyHitters;
+import com.bfs.hibernateprojectdemo.service.ProductSalesStatsService;
+import org.hibernate.Hibernate;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
 import org.hibernate.query.Query;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
-import java.security.Principal;
 import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.List;
 
 import com.bfs.hibernateprojectdemo.dto.MessageResponse;
+import com.bfs.hibernateprojectdemo.dto.OrderLineViewDto;
+import com.bfs.hibernateprojectdemo.dto.OrderPage;
 import com.bfs.hibernateprojectdemo.dto.OrderViewDto;
 import com.bfs.hibernateprojectdemo.exception.NotEnoughInventoryException;
+import com.bfs.hibernateprojectdemo.security.AuthenticatedUser;
+import com.bfs.hibernateprojectdemo.security.CurrentUser;
+import com.bfs.hibernateprojectdemo.util.KeysetCursor;
 
 @RestController
 @RequestMapping("/orders")
@@ -31,55 +42,101 @@ public class OrderController {
 
     private final SessionFactory sessionFactory;
     private final HomePageService homePageService;
-
-    public OrderController(SessionFactory sessionFactory, HomePageService homePageService) {
+    private final InventoryService inventoryService;
+    private final IdempotencyService idempotencyService;
+    private final ProductSalesStatsService productSalesStatsService;
+    private final ProductHeavyHitters heavyHitters;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+
+    public OrderController(SessionFactory sessionFactory, HomePageService homePageService,
+                           InventoryService inventoryService, IdempotencyService idempotencyService,
+                           ProductSalesStatsService productSalesStatsService,
+                           ProductHeavyHitters heavyHitters,
+                           @Value("${orders.page.default-size:5}") int defaultPageSize,
+                           @Value("${orders.page.max-size:50}") int maxPageSize) {
         this.sessionFactory = sessionFactory;
         this.homePageService = homePageService;
+        this.inventoryService = inventoryService;
+        this.idempotencyService = idempotencyService;
+        this.productSalesStatsService = productSalesStatsService;
+        this.heavyHitters = heavyHitters;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
     }
 
     @PreAuthorize("hasRole('USER')")
     @PostMapping
-    public ResponseEntity<?> placeOrder(@RequestBody OrderRequest req, Principal principal) {
-        if (principal == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+    public ResponseEntity<?> placeOrder(@RequestBody OrderRequest req,
+                                        @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+                                        @CurrentUser AuthenticatedUser user) {
+        if (user == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                 .body(new MessageResponse("Unauthorized"));
 
+        if (req.order == null || req.order.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(new MessageResponse("Order items cannot be empty"));
+        }
+        // Validate each item has a positive quantity
+        for (OrderItem item : req.order) {
+            if (item == null || item.quantity <= 0) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                        .body(new MessageResponse("Each order item quantity must be >= 1"));
+            }
+            if (item.productId == null) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                        .body(new MessageResponse("Each order item must have a productId"));
+            }
+        }
+
+        // Merge duplicate products and sort lines by product id so every basket locks rows in the same order
+        java.util.SortedMap<Long, Integer> lines = new java.util.TreeMap<>();
+        for (OrderItem item : req.order) {
+            lines.merge(item.productId, item.quantity, Integer::sum);
+        }
+
+        // A retried request seen by this instance is answered before opening a session
+        String scopedKey = null;
+        String requestHash = null;
+        if (idempotencyKey != null) {
+            if (idempotencyKey.isEmpty() || idempotencyKey.length() > 100) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                        .body(new MessageResponse("Idempotency-Key must be 1-100 characters"));
+            }
+            scopedKey = idempotencyService.scope(user.getUsername(), idempotencyKey);
+            requestHash = idempotencyService.fingerprint(lines);
+            IdempotencyRecord prior = idempotencyService.findCached(scopedKey);
+            if (prior != null) return replay(prior, requestHash);
+        }
+
         try (Session s = sessionFactory.openSession()) {
             Transaction tx = s.beginTransaction();
             try {
-                User user = s.createQuery("from User where username = :un", User.class)
-                        .setParameter("un", principal.getName())
-                        .uniqueResult();
-
-                if (user == null) {
-                    tx.rollback();
-                    return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                            .body(new MessageResponse("Unauthorized"));
-                }
-
-                if (req.order == null || req.order.isEmpty()) {
-                    tx.rollback();
-                    return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                            .body(new MessageResponse("Order items cannot be empty"));
-                }
-                // Validate each item has a positive quantity
-                for (OrderItem item : req.order) {
-                    if (item == null || item.quantity <= 0) {
+                // Claim the key before touching stock; a concurrent duplicate blocks here until we finish
+                IdempotencyRecord claim = null;
+                if (scopedKey != null) {
+                    IdempotencyRecord prior = idempotencyService.find(s, scopedKey);
+                    if (prior != null) {
                         tx.rollback();
-                        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                                .body(new MessageResponse("Each order item quantity must be >= 1"));
+                        return replay(prior, requestHash);
                     }
+                    claim = idempotencyService.claim(s, scopedKey, requestHash);
                 }
 
-                // Collect all reasons if any items are invalid (not found or insufficient stock)
+                // Snapshot all products in one query; collect all reasons if any items are invalid
+                java.util.Map<Long, Product> snapshots = new java.util.HashMap<>();
+                for (Product p : s.createQuery(
+                                "from Product p where p.productId in :ids order by p.productId", Product.class)
+                        .setParameterList("ids", lines.keySet())
+                        .setCacheable(true)
+                        .setCacheRegion(Product.QUERY_REGION)
+                        .list()) {
+                    snapshots.put(p.getProductId(), p);
+                }
                 java.util.List<String> reasons = new java.util.ArrayList<>();
-                for (OrderItem item : req.order) {
-                    Product p = s.get(Product.class, item.productId);
-                    if (p == null) {
-                        reasons.add("Product not found: " + item.productId);
-                        continue;
-                    }
-                    if (p.getQuantity() < item.quantity) {
-                        reasons.add("Insufficient stock for product: " + p.getName());
+                for (Long productId : lines.keySet()) {
+                    if (!snapshots.containsKey(productId)) {
+                        reasons.add("Product not found: " + productId);
                     }
                 }
 
@@ -89,36 +146,44 @@ public class OrderController {
                             .body(new MessageResponse("Failed to process order: " + String.join("; ", reasons)));
                 }
 
-                // All items valid, proceed with stock deduction and order creation
-                for (OrderItem item : req.order) {
-                    Product p = s.get(Product.class, item.productId);
-                    int newQty = p.getQuantity() - item.quantity;
-                    // Snapshot prices before potential deletion
-                    double retailSnapshot = p.getRetailPrice();
-                    double wholesaleSnapshot = p.getWholesalePrice();
-                    if (newQty <= 0) {
-                        // Remove product completely when stock reaches <= 0
-                        s.delete(p);
-                    } else {
-                        p.setQuantity(newQty);
-                        s.update(p);
-                    }
+                // Reserve every line in one batch of guarded decrements; affected-row counts decide
+                for (Long productId : inventoryService.reserveAll(s, lines)) {
+                    reasons.add("Insufficient stock for product: " + snapshots.get(productId).getName());
+                }
+
+                if (!reasons.isEmpty()) {
+                    tx.rollback();
+                    return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                            .body(new MessageResponse("Failed to process order: " + String.join("; ", reasons)));
+                }
 
-                    Order o = new Order();
-                    o.setUserId(user.getId());
-                    o.setProductId(item.productId);
-                    o.setQuantity(item.quantity);
-                    o.setStatus("Processing");
-                    o.setOrderTime(LocalDateTime.now());
+                // Remove products completely when stock reaches <= 0
+                inventoryService.removeDepleted(s, lines.keySet());
+
+                // All items reserved: one order header, one line per product (lines cascade in one insert batch)
+                Order o = new Order();
+                o.setUserId(user.getId());
+                o.setStatus("Processing");
+                o.setOrderTime(LocalDateTime.now());
+                for (java.util.Map.Entry<Long, Integer> entry : lines.entrySet()) {
+                    Product p = snapshots.get(entry.getKey());
+                    OrderLine line = new OrderLine();
+                    line.setProductId(entry.getKey());
+                    line.setQuantity(entry.getValue());
                     // Snapshot prices at purchase time
-                    o.setRetailPriceAtPurchase(retailSnapshot);
-                    o.setWholesalePriceAtPurchase(wholesaleSnapshot);
+                    line.setRetailPriceAtPurchase(p.getRetailPrice());
+                    line.setWholesalePriceAtPurchase(p.getWholesalePrice());
                     // Snapshot product name and description at purchase time
-                    o.setProductNameAtPurchase(p.getName());
-                    o.setProductDescriptionAtPurchase(p.getDescription());
-                    s.save(o);
+                    line.setProductNameAtPurchase(p.getName());
+                    line.setProductDescriptionAtPurchase(p.getDescription());
+                    o.addLine(line);
+                }
+                s.save(o);
+                if (claim != null) {
+                    idempotencyService.complete(claim, HttpStatus.CREATED.value(), "Order created successfully");
                 }
                 tx.commit();
+                if (claim != null) idempotencyService.remember(claim);
                 return ResponseEntity.status(HttpStatus.CREATED)
                         .body(new MessageResponse("Order created successfully"));
             } catch (NotEnoughInventoryException ie) {
@@ -126,115 +191,162 @@ public class OrderController {
                 throw ie; // Let global handler shape the response
             } catch (Exception e) {
                 if (tx.isActive()) tx.rollback();
+                // Lost the race for the key: answer with the outcome the winning request committed
+                if (scopedKey != null && idempotencyService.isDuplicateKey(e)) {
+                    IdempotencyRecord winner = idempotencyService.find(scopedKey);
+                    if (winner != null) return replay(winner, requestHash);
+                    return ResponseEntity.status(HttpStatus.CONFLICT)
+                            .body(new MessageResponse("A request with this Idempotency-Key is still in progress"));
+                }
                 return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                         .body(new MessageResponse("Error placing order"));
             }
         }
     }
 
+    private ResponseEntity<?> replay(IdempotencyRecord prior, String requestHash) {
+        if (!prior.getRequestHash().equals(requestHash)) {
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                    .body(new MessageResponse("Idempotency-Key was already used for a different order"));
+        }
+        return ResponseEntity.status(prior.getResponseStatus())
+                .body(new MessageResponse(prior.getResponseBody()));
+    }
+
+    private int pageSize(Integer size) {
+        if (size == null) return defaultPageSize;
+        if (size <= 0) throw new IllegalArgumentException("size must be >= 1");
+        return Math.min(size, maxPageSize);
+    }
+
+    /**
+     * Seeks past {@code after} on (orderTime desc, id desc) instead of OFFSET, so every page costs
+     * the same index range scan. Reads one extra row to know whether another page exists.
+     */
+    private static List<Order> fetchPage(Session s, Long userId, boolean hideCanceled, KeysetCursor after, int limit) {
+        StringBuilder hql = new StringBuilder("from Order o where 1 = 1");
+        if (userId != null) hql.append(" and o.userId = :uid");
+        if (hideCanceled) hql.append(" and o.status <> 'Canceled'");
+        if (after != null) hql.append(" and (o.orderTime < :t or (o.orderTime = :t and o.id < :id))");
+        hql.append(" order by o.orderTime desc, o.id desc");
+        Query<Order> q = s.createQuery(hql.toString(), Order.class);
+        if (userId != null) q.setParameter("uid", userId);
+        if (after != null) {
+            q.setParameter("t", after.getTime());
+            q.setParameter("id", after.getId());
+        }
+        q.setMaxResults(limit + 1);
+        return q.list();
+    }
+
+    private static <T> OrderPage<T> toPage(List<Order> rows, int limit, java.util.function.Function<Order, T> mapper) {
+        String next = null;
+        if (rows.size() > limit) {
+            rows = rows.subList(0, limit);
+            Order last = rows.get(limit - 1);
+            next = new KeysetCursor(last.getOrderTime(), last.getId()).encode();
+        }
+        List<T> items = new java.util.ArrayList<>(rows.size());
+        for (Order o : rows) {
+            items.add(mapper.apply(o));
+        }
+        return new OrderPage<>(items, next);
+    }
+
+    // Loads the lines of a page of orders while the session is open; @BatchSize makes this one query per 50 orders
+    private static void loadLines(List<Order> orders) {
+        for (Order o : orders) {
+            Hibernate.initialize(o.getLines());
+        }
+    }
+
+    // Map to user view DTO (omit snapshot prices)
+    private static OrderViewDto toView(Order o) {
+        OrderViewDto dto = new OrderViewDto();
+        dto.setId(o.getId());
+        dto.setStatus(o.getStatus());
+        dto.setOrderTime(o.getOrderTime());
+        List<OrderLineViewDto> lines = new java.util.ArrayList<>();
+        for (OrderLine l : o.getLines()) {
+            OrderLineViewDto line = new OrderLineViewDto();
+            line.setProductId(l.getProductId());
+            line.setQuantity(l.getQuantity());
+            line.setProductName(l.getProductNameAtPurchase());
+            line.setProductDescription(l.getProductDescriptionAtPurchase());
+            lines.add(line);
+        }
+        dto.setLines(lines);
+        return dto;
+    }
+
     @PreAuthorize("hasAnyRole('ADMIN','USER')")
     @GetMapping("/all")
-    public ResponseEntity<?> getAllOrders(@RequestParam(defaultValue = "0") int page, Principal principal) {
+    public ResponseEntity<?> getAllOrders(@RequestParam(required = false) String cursor,
+                                          @RequestParam(required = false) Integer size,
+                                          @CurrentUser AuthenticatedUser currentUser) {
         try (Session s = sessionFactory.openSession()) {
-            if (principal == null) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .body(new MessageResponse("Unauthorized"));
-            }
-
-            User currentUser = s.createQuery("from User where username = :un", User.class)
-                    .setParameter("un", principal.getName())
-                    .uniqueResult();
             if (currentUser == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                         .body(new MessageResponse("Unauthorized"));
             }
 
-            boolean isAdmin = "ADMIN".equals(currentUser.getRole());
+            int limit = pageSize(size);
+            KeysetCursor after = cursor == null ? null : KeysetCursor.decode(cursor);
+            boolean isAdmin = currentUser.isAdmin();
             if (isAdmin) {
-                Query<Order> q = s.createQuery("from Order o order by o.orderTime desc", Order.class);
-                q.setFirstResult(page * 5);
-                q.setMaxResults(5);
-                List<Order> orders = q.list();
-                if (orders == null || orders.isEmpty()) {
+                List<Order> orders = fetchPage(s, null, false, after, limit);
+                if (orders.isEmpty()) {
                     return ResponseEntity.ok(new MessageResponse("No orders found"));
                 }
-                return ResponseEntity.ok(orders);
+                loadLines(orders);
+                return ResponseEntity.ok(toPage(orders, limit, o -> o));
             } else {
-                Query<Order> q = s.createQuery("from Order o where o.userId = :uid order by o.orderTime desc", Order.class);
-                q.setParameter("uid", currentUser.getId());
-                q.setFirstResult(page * 5);
-                q.setMaxResults(5);
-                List<Order> orders = q.list();
-                // Map to user view DTO (hide wholesale price at purchase)
-                List<OrderViewDto> dtos = new java.util.ArrayList<>();
-                for (Order o : orders) {
-                    if ("Canceled".equals(o.getStatus())) continue;
-                    OrderViewDto dto = new OrderViewDto();
-                    dto.setId(o.getId());
-                    dto.setProductId(o.getProductId());
-                    dto.setQuantity(o.getQuantity());
-                    dto.setStatus(o.getStatus());
-                    dto.setOrderTime(o.getOrderTime());
-                    dto.setProductName(o.getProductNameAtPurchase());
-                    dto.setProductDescription(o.getProductDescriptionAtPurchase());
-                    dtos.add(dto);
-                }
-                if (dtos.isEmpty()) {
+                // Canceled orders are filtered in the query so every page is full
+                List<Order> orders = fetchPage(s, currentUser.getId(), true, after, limit);
+                if (orders.isEmpty()) {
                     return ResponseEntity.ok(new MessageResponse("No orders found"));
                 }
-                return ResponseEntity.ok(dtos);
+                // Map to user view DTO (hide wholesale price at purchase)
+                return ResponseEntity.ok(toPage(orders, limit, OrderController::toView));
             }
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(new MessageResponse("Failed to fetch orders"));
         }
     }
 
-    // User-specific: view all orders of the current user (paginated 5 per page)
+    // User-specific: view all orders of the current user (keyset paginated, newest first)
     @PreAuthorize("hasRole('USER')")
     @GetMapping("/mine")
-    public ResponseEntity<?> getMyOrders(@RequestParam(defaultValue = "0") int page, Principal principal) {
-        if (principal == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+    public ResponseEntity<?> getMyOrders(@RequestParam(required = false) String cursor,
+                                         @RequestParam(required = false) Integer size,
+                                         @CurrentUser AuthenticatedUser user) {
+        if (user == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                 .body(new MessageResponse("Unauthorized: please log in"));
         try (Session s = sessionFactory.openSession()) {
-            User user = s.createQuery("from User where username = :un", User.class)
-                    .setParameter("un", principal.getName())
-                    .uniqueResult();
-            if (user == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body(new MessageResponse("Unauthorized: user not found"));
-
-            Query<Order> q = s.createQuery("from Order o where o.userId = :uid order by o.orderTime desc", Order.class);
-            q.setParameter("uid", user.getId());
-            q.setFirstResult(page * 5);
-            q.setMaxResults(5);
-            List<Order> orders = q.list();
+            int limit = pageSize(size);
+            KeysetCursor after = cursor == null ? null : KeysetCursor.decode(cursor);
+            List<Order> orders = fetchPage(s, user.getId(), true, after, limit);
             // Auto-cancel any zero-quantity orders to keep data consistent
             Transaction tx = s.beginTransaction();
             for (Order o : orders) {
-                if (o.getQuantity() <= 0 && !"Canceled".equals(o.getStatus())) {
+                if (o.getTotalQuantity() <= 0 && !"Canceled".equals(o.getStatus())) {
                     o.setStatus("Canceled");
                     s.update(o);
                 }
             }
             tx.commit();
             // Map to view DTO for user: omit snapshot prices and hide canceled orders
-            List<OrderViewDto> dtos = new java.util.ArrayList<>();
-            for (Order o : orders) {
-                if ("Canceled".equals(o.getStatus())) continue;
-                OrderViewDto dto = new OrderViewDto();
-                dto.setId(o.getId());
-                dto.setProductId(o.getProductId());
-                dto.setQuantity(o.getQuantity());
-                dto.setStatus(o.getStatus());
-                dto.setOrderTime(o.getOrderTime());
-                dto.setProductName(o.getProductNameAtPurchase());
-                dto.setProductDescription(o.getProductDescriptionAtPurchase());
-                dtos.add(dto);
-            }
-            if (dtos.isEmpty()) {
+            OrderPage<OrderViewDto> page = toPage(orders, limit, OrderController::toView);
+            page.getItems().removeIf(dto -> "Canceled".equals(dto.getStatus()));
+            if (page.getItems().isEmpty() && page.getNextCursor() == null) {
                 return ResponseEntity.ok(new MessageResponse("No orders found"));
             }
-            return ResponseEntity.ok(dtos);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(new MessageResponse("Failed to fetch orders"));
@@ -244,20 +356,14 @@ public class OrderController {
     // User-specific: top-N most recently ordered products (include all statuses), tiebreaker by productId
     @PreAuthorize("hasRole('USER')")
     @GetMapping("/mine/recent/{n}")
-    public ResponseEntity<?> getMyRecentProducts(@PathVariable int n, Principal principal) {
-        if (principal == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+    public ResponseEntity<?> getMyRecentProducts(@PathVariable int n, @CurrentUser AuthenticatedUser user) {
+        if (user == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                 .body(new MessageResponse("Unauthorized: please log in"));
         if (n <= 0) return ResponseEntity.badRequest().body(new MessageResponse("n must be >= 1"));
         try (Session s = sessionFactory.openSession()) {
-            User user = s.createQuery("from User where username = :un", User.class)
-                    .setParameter("un", principal.getName())
-                    .uniqueResult();
-            if (user == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body(new MessageResponse("Unauthorized: user not found"));
-
             Query<Long> idQuery = s.createQuery(
-                    "SELECT o.productId FROM Order o WHERE o.userId = :uid " +
-                            "GROUP BY o.productId ORDER BY MAX(o.orderTime) DESC, o.productId ASC", Long.class);
+                    "SELECT l.productId FROM OrderLine l JOIN l.order o WHERE o.userId = :uid " +
+                            "GROUP BY l.productId ORDER BY MAX(o.orderTime) DESC, l.productId ASC", Long.class);
             idQuery.setParameter("uid", user.getId());
             idQuery.setMaxResults(n);
             List<Long> productIds = idQuery.list();
@@ -268,6 +374,8 @@ public class OrderController {
             Query<Product> productQuery = s.createQuery(
                     "FROM Product p WHERE p.productId IN :ids ORDER BY p.productId ASC", Product.class);
             productQuery.setParameterList("ids", productIds);
+            productQuery.setCacheable(true);
+            productQuery.setCacheRegion(Product.QUERY_REGION);
             List<Product> products = productQuery.list();
             if (products == null || products.isEmpty()) {
                 return ResponseEntity.ok(new MessageResponse("No recent products"));
@@ -292,20 +400,14 @@ public class OrderController {
     // User-specific: top-N most frequently ordered products (include all statuses)
     @PreAuthorize("hasRole('USER')")
     @GetMapping("/mine/frequent/{n}")
-    public ResponseEntity<?> getMyFrequentProducts(@PathVariable int n, Principal principal) {
-        if (principal == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+    public ResponseEntity<?> getMyFrequentProducts(@PathVariable int n, @CurrentUser AuthenticatedUser user) {
+        if (user == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                 .body(new MessageResponse("Unauthorized: please log in"));
         if (n <= 0) return ResponseEntity.badRequest().body(new MessageResponse("n must be >= 1"));
         try (Session s = sessionFactory.openSession()) {
-            User user = s.createQuery("from User where username = :un", User.class)
-                    .setParameter("un", principal.getName())
-                    .uniqueResult();
-            if (user == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body(new MessageResponse("Unauthorized: user not found"));
-
             Query<Long> idQuery = s.createQuery(
-                    "SELECT o.productId FROM Order o WHERE o.userId = :uid " +
-                            "GROUP BY o.productId ORDER BY COUNT(o.productId) DESC, o.productId ASC", Long.class);
+                    "SELECT l.productId FROM OrderLine l JOIN l.order o WHERE o.userId = :uid " +
+                            "GROUP BY l.productId ORDER BY COUNT(l.productId) DESC, l.productId ASC", Long.class);
             idQuery.setParameter("uid", user.getId());
             idQuery.setMaxResults(n);
             List<Long> productIds = idQuery.list();
@@ -316,6 +418,8 @@ public class OrderController {
             Query<Product> productQuery = s.createQuery(
                     "FROM Product p WHERE p.productId IN :ids ORDER BY p.productId ASC", Product.class);
             productQuery.setParameterList("ids", productIds);
+            productQuery.setCacheable(true);
+            productQuery.setCacheRegion(Product.QUERY_REGION);
             List<Product> products = productQuery.list();
             if (products == null || products.isEmpty()) {
                 return ResponseEntity.ok(new MessageResponse("No frequent products"));
@@ -336,19 +440,22 @@ public class OrderController {
         }
     }
 
-    // Admin dashboard endpoint with pagination (5 per page)
+    // Admin dashboard endpoint (keyset paginated, newest first)
     @PreAuthorize("hasRole('ADMIN')")
     @GetMapping("/admin")
-    public ResponseEntity<?> getOrdersAdmin(@RequestParam(defaultValue = "0") int page) {
+    public ResponseEntity<?> getOrdersAdmin(@RequestParam(required = false) String cursor,
+                                            @RequestParam(required = false) Integer size) {
         try (Session s = sessionFactory.openSession()) {
-            Query<Order> q = s.createQuery("from Order o order by o.orderTime desc", Order.class);
-            q.setFirstResult(page * 5);
-            q.setMaxResults(5);
-            List<Order> orders = q.list();
-            if (orders == null || orders.isEmpty()) {
+            int limit = pageSize(size);
+            KeysetCursor after = cursor == null ? null : KeysetCursor.decode(cursor);
+            List<Order> orders = fetchPage(s, null, false, after, limit);
+            if (orders.isEmpty()) {
                 return ResponseEntity.ok(new MessageResponse("No orders found"));
             }
-            return ResponseEntity.ok(orders);
+            loadLines(orders);
+            return ResponseEntity.ok(toPage(orders, limit, o -> o));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(new MessageResponse("Failed to fetch orders"));
@@ -357,7 +464,7 @@ public class OrderController {
 
     @PreAuthorize("hasAnyRole('ADMIN','USER')")
     @GetMapping("/{id}")
-    public ResponseEntity<?> getOrderById(@PathVariable Long id, Principal principal) {
+    public ResponseEntity<?> getOrderById(@PathVariable Long id, @CurrentUser AuthenticatedUser currentUser) {
         try (Session s = sessionFactory.openSession()) {
             Order order = homePageService.getOrderDetail(id);
             if (order == null) {
@@ -365,22 +472,15 @@ public class OrderController {
                         .body(new MessageResponse("Order not found"));
             }
             // Enforce user segregation: USER can only view own order; ADMIN can view any
-            if (principal != null) {
-                User currentUser = s.createQuery("from User where username = :un", User.class)
-                        .setParameter("un", principal.getName())
-                        .uniqueResult();
-                if (currentUser == null) {
-                    return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                            .body(new MessageResponse("Unauthorized"));
-                }
-                boolean isAdmin = "ADMIN".equals(currentUser.getRole());
+            if (currentUser != null) {
+                boolean isAdmin = currentUser.isAdmin();
                 boolean isOwnOrder = order.getUserId().equals(currentUser.getId());
                 if (!isAdmin && !isOwnOrder) {
                     return ResponseEntity.status(HttpStatus.FORBIDDEN)
                             .body(new MessageResponse("You cannot view other users' orders"));
                 }
                 // If zero quantity, cancel to ensure consistent state
-                if (order.getQuantity() <= 0 && !"Canceled".equals(order.getStatus())) {
+                if (order.getTotalQuantity() <= 0 && !"Canceled".equals(order.getStatus())) {
                     Transaction tx = s.beginTransaction();
                     order.setStatus("Canceled");
                     s.update(order);
@@ -390,15 +490,7 @@ public class OrderController {
                     if ("Canceled".equals(order.getStatus())) {
                         return ResponseEntity.ok(new MessageResponse("Order canceled due to zero quantity"));
                     }
-                    OrderViewDto dto = new OrderViewDto();
-                    dto.setId(order.getId());
-                    dto.setProductId(order.getProductId());
-                    dto.setQuantity(order.getQuantity());
-                    dto.setStatus(order.getStatus());
-                    dto.setOrderTime(order.getOrderTime());
-                    dto.setProductName(order.getProductNameAtPurchase());
-                    dto.setProductDescription(order.getProductDescriptionAtPurchase());
-                    return ResponseEntity.ok(dto);
+                    return ResponseEntity.ok(toView(order));
                 }
             }
             return ResponseEntity.ok(order);
@@ -412,8 +504,8 @@ public class OrderController {
     @PatchMapping("/{id}/cancel")
     //cancel complete order: case 1: the order has been completed, but we want to cancel it;
     //cancel processing order: case2: the order has been processing, but we want to cancel it;
-    public ResponseEntity<?> cancelOrder(@PathVariable Long id, Principal principal) {
-        if (principal == null) {
+    public ResponseEntity<?> cancelOrder(@PathVariable Long id, @CurrentUser AuthenticatedUser currentUser) {
+        if (currentUser == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(new MessageResponse("Unauthorized"));
         }
@@ -432,18 +524,7 @@ public class OrderController {
             }
 
             // Check user ownership first: USER can only cancel their own orders, ADMIN can cancel any
-            User currentUser = s.createQuery("from User where username = :un", User.class)
-                    .setParameter("un", principal.getName())
-                    .uniqueResult();
-            
-            if (currentUser == null) {
-                if (tx != null && tx.isActive()) tx.rollback();
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .body(new MessageResponse("Unauthorized"));
-            }
-            
-            // Check if user has ADMIN role or if it's their own order
-            boolean isAdmin = "ADMIN".equals(currentUser.getRole());
+            boolean isAdmin = currentUser.isAdmin();
             boolean isOwnOrder = o.getUserId().equals(currentUser.getId());
             
             if (!isAdmin && !isOwnOrder) {
@@ -465,19 +546,18 @@ public class OrderController {
                         .body(new MessageResponse("Cannot cancel order in state: " + o.getStatus()));
             }
 
-            // Restore product quantity; if product was deleted, recreate it using order snapshots
-            Product p = s.get(Product.class, o.getProductId());
-            if (p != null) {
-                p.setQuantity(p.getQuantity() + o.getQuantity());
-                s.update(p);
-            } else {
-                Product restored = new Product();
-                restored.setName(o.getProductNameAtPurchase());
-                restored.setDescription(o.getProductDescriptionAtPurchase());
-                restored.setRetailPrice(o.getRetailPriceAtPurchase());
-                restored.setWholesalePrice(o.getWholesalePriceAtPurchase());
-                restored.setQuantity(o.getQuantity());
-                s.save(restored);
+            // Restore each line's quantity (lines are ordered by product id, same lock order as placeOrder);
+            // if a product was deleted, recreate it using the line's snapshots
+            for (OrderLine line : o.getLines()) {
+                if (!inventoryService.restock(s, line.getProductId(), line.getQuantity())) {
+                    Product restored = new Product();
+                    restored.setName(line.getProductNameAtPurchase());
+                    restored.setDescription(line.getProductDescriptionAtPurchase());
+                    restored.setRetailPrice(line.getRetailPriceAtPurchase());
+                    restored.setWholesalePrice(line.getWholesalePriceAtPurchase());
+                    restored.setQuantity(line.getQuantity());
+                    inventoryService.recreate(s, restored);
+                }
             }
             
             o.setStatus("Canceled");
@@ -486,15 +566,7 @@ public class OrderController {
             if (isAdmin) {
                 return ResponseEntity.ok(o);
             } else {
-                OrderViewDto dto = new OrderViewDto();
-                dto.setId(o.getId());
-                dto.setProductId(o.getProductId());
-                dto.setQuantity(o.getQuantity());
-                dto.setStatus(o.getStatus());
-                dto.setOrderTime(o.getOrderTime());
-                dto.setProductName(o.getProductNameAtPurchase());
-                dto.setProductDescription(o.getProductDescriptionAtPurchase());
-                return ResponseEntity.ok(dto);
+                return ResponseEntity.ok(toView(o));
             }
         } catch (Exception e) {
             if (tx != null && tx.isActive()) {
@@ -524,7 +596,7 @@ public class OrderController {
     public ResponseEntity<?> getTotalSold() {
         try (Session s = sessionFactory.openSession()) {
             Long total = s.createQuery(
-                    "SELECT COALESCE(SUM(o.quantity), 0) FROM Order o WHERE o.status = 'Completed'",
+                    "SELECT COALESCE(SUM(l.quantity), 0) FROM OrderLine l JOIN l.order o WHERE o.status = 'Completed'",
                     Long.class).uniqueResult();
             return ResponseEntity.ok(total == null ? 0 : total);
         } catch (Exception e) {
@@ -569,6 +641,10 @@ public class OrderController {
 
             o.setStatus("Completed");
             s.update(o);
+            // Roll the lines into product_sales_stats in the same transaction as the status change
+            productSalesStatsService.recordCompleted(s, o);
+            // The approximate rankings are fed here, independently of the exact rollup
+            heavyHitters.recordOnCommit(s, o);
             tx.commit();
             return ResponseEntity.ok(o);
         } catch (Exception e) {
@@ -2,13 +2,16 @@ package com.bfs.hibernateprojectdemo.controller;
 
 import com.bfs.hibernateprojectdemo.domain.Product;
 import com.bfs.hibernateprojectdemo.dto.UserProductDto;
+import com.bfs.hibernateprojectdemo.security.AuthenticatedUser;
+import com.bfs.hibernateprojectdemo.security.CurrentUser;
+import com.bfs.hibernateprojectdemo.service.AuditQueryService;
 import com.bfs.hibernateprojectdemo.service.HomePageService;
 import com.bfs.hibernateprojectdemo.service.ProductAnalyticsService;
+import com.bfs.hibernateprojectdemo.service.ProductCatalogCache;
+import com.bfs.hibernateprojectdemo.util.ChangeSetDiff;
 import com.bfs.hibernateprojectdemo.util.PatchUtils;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.github.fge.jsonpatch.JsonPatch;
-import com.github.fge.jsonpatch.mergepatch.JsonMergePatch;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
@@ -28,17 +31,34 @@ public class ProductController {
     private final ProductAnalyticsService productAnalyticsService;
     private final ObjectMapper objectMapper;
     private final com.bfs.hibernateprojectdemo.service.AuditLogService auditLogService;
+    private final ProductCatalogCache productCatalogCache;
+    private final AuditQueryService auditQueryService;
+    // Fields recorded in a product's audit change set
+    private final ChangeSetDiff<Product> productDiff;
+    private final PatchUtils patchUtils;
 
     public ProductController(SessionFactory sessionFactory,
                              HomePageService homePageService,
                              ProductAnalyticsService productAnalyticsService,
                              ObjectMapper objectMapper,
-                             com.bfs.hibernateprojectdemo.service.AuditLogService auditLogService) {
+                             com.bfs.hibernateprojectdemo.service.AuditLogService auditLogService,
+                             ProductCatalogCache productCatalogCache,
+                             AuditQueryService auditQueryService) {
         this.sessionFactory = sessionFactory;
         this.homePageService = homePageService;
         this.productAnalyticsService = productAnalyticsService;
         this.objectMapper = objectMapper;
         this.auditLogService = auditLogService;
+        this.productCatalogCache = productCatalogCache;
+        this.auditQueryService = auditQueryService;
+        this.productDiff = ChangeSetDiff.builder(Product.class)
+                .text("name", Product::getName)
+                .text("description", Product::getDescription)
+                .decimal("retailPrice", Product::getRetailPrice)
+                .decimal("wholesalePrice", Product::getWholesalePrice)
+                .integer("quantity", Product::getQuantity)
+                .build(objectMapper);
+        this.patchUtils = new PatchUtils(objectMapper);
     }
 
 // Inside ProductController
@@ -99,15 +119,32 @@ public class ProductController {
         }
     }
 
+    // Change history (audit entries), newest first, streamed as NDJSON with a trailing nextCursor line;
+    // the first page includes changes the audit sink has not written to audit_log yet
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/{productId}/history")
+    public ResponseEntity<org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody> getProductHistory(
+            @PathVariable Long productId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @CurrentUser AuthenticatedUser currentUser) {
+        AuditController.requireAdmin(currentUser);
+        AuditQueryService.Filter filter = new AuditQueryService.Filter();
+        filter.resourceType = "Product";
+        filter.resourceId = productId;
+        return AuditController.stream(auditQueryService, filter, cursor, size);
+    }
+
     @PreAuthorize("hasRole('ADMIN')")
     @PatchMapping(path = "/{productId}", consumes = {"application/json-patch+json", "application/merge-patch+json", "application/json"})
     public ResponseEntity<?> updateProduct(@PathVariable Long productId,
                                            @RequestBody String patchBody,
                                            @RequestHeader(value = "Content-Type", required = false) String contentType,
                                            @RequestHeader(value = "If-Match", required = false) String ifMatch,
-                                           java.security.Principal principal) {
+                                           @CurrentUser AuthenticatedUser currentUser) {
         try (Session s = sessionFactory.openSession()) {
             Transaction tx = s.beginTransaction();
+            productCatalogCache.invalidateOnCommit(s);
             Product p = s.get(Product.class, productId);
 
             if (p == null) {
@@ -129,18 +166,13 @@ public class ProductController {
 
             // Apply patch using appropriate strategy
             Product patched;
-            PatchUtils patchUtils = new PatchUtils(objectMapper);
             try {
+                // Patches are applied to a copy, so p still holds the pre-patch state for the change set
+                JsonNode patch = objectMapper.readTree(patchBody);
                 if (contentType != null && contentType.startsWith("application/json-patch+json")) {
-                    JsonPatch patch = objectMapper.readValue(patchBody, JsonPatch.class);
                     patched = patchUtils.applyJsonPatch(patch, p, Product.class);
-                } else if (contentType != null && contentType.startsWith("application/merge-patch+json")) {
-                    JsonMergePatch patch = objectMapper.readValue(patchBody, JsonMergePatch.class);
-                    patched = patchUtils.applyMergePatch(patch, p, Product.class);
                 } else {
-                    // Fallback: treat body as partial JSON and deep-merge
-                    JsonNode node = objectMapper.readTree(patchBody);
-                    JsonMergePatch patch = JsonMergePatch.fromJson(node);
+                    // merge-patch+json, or a plain partial JSON body deep-merged the same way
                     patched = patchUtils.applyMergePatch(patch, p, Product.class);
                 }
             } catch (Exception pe) {
@@ -156,14 +188,7 @@ public class ProductController {
             }
 
             // Compute change set for audit
-            StringBuilder csb = new StringBuilder("{");
-            boolean first = true;
-            first = appendChange(csb, first, "name", p.getName(), patched.getName());
-            first = appendChange(csb, first, "description", p.getDescription(), patched.getDescription());
-            first = appendChange(csb, first, "retailPrice", p.getRetailPrice(), patched.getRetailPrice());
-            first = appendChange(csb, first, "wholesalePrice", p.getWholesalePrice(), patched.getWholesalePrice());
-            first = appendChange(csb, first, "quantity", p.getQuantity(), patched.getQuantity());
-            csb.append("}");
+            String changeSet = productDiff.diff(p, patched);
 
             // If name changed to an existing product's name, merge-by-name
             if (patched.getName() != null && !patched.getName().equals(p.getName())) {
@@ -188,7 +213,7 @@ public class ProductController {
                     // Delete original product as it merged into sameName
                     s.delete(p);
                     tx.commit();
-                    auditLogService.log("Product", sameName.getProductId(), null, csb.toString(),
+                    auditLogService.log("Product", sameName.getProductId(), null, changeSet,
                             p.getVersion() == null ? null : p.getVersion(),
                             sameName.getVersion() == null ? null : sameName.getVersion());
                     return ResponseEntity.ok(sameName);
@@ -211,17 +236,8 @@ public class ProductController {
             s.update(p);
             tx.commit();
 
-            Long uid = null;
-            if (principal != null) {
-                try {
-                    // fetch user id by username
-                    com.bfs.hibernateprojectdemo.domain.User dbUser = s.createQuery("from User where username = :un", com.bfs.hibernateprojectdemo.domain.User.class)
-                            .setParameter("un", principal.getName())
-                            .uniqueResult();
-                    if (dbUser != null) uid = dbUser.getId();
-                } catch (Exception ignored) {}
-            }
-            auditLogService.log("Product", p.getProductId(), uid, csb.toString(),
+            Long uid = currentUser == null ? null : currentUser.getId();
+            auditLogService.log("Product", p.getProductId(), uid, changeSet,
                     p.getVersion() == null ? null : p.getVersion(),
                     p.getVersion() == null ? null : p.getVersion());
             return ResponseEntity.ok(p);
@@ -231,23 +247,6 @@ public class ProductController {
         }
     }
 
-    private String toJsonValue(Object v) {
-        if (v == null) return "null";
-        if (v instanceof Number) return v.toString();
-        return "\"" + v.toString().replace("\"", "\\\"") + "\"";
-    }
-
-    private boolean appendChange(StringBuilder csb, boolean first, String field, Object from, Object to) {
-        if (!java.util.Objects.equals(from, to)) {
-            if (!first) csb.append(",");
-            csb.append("\"").append(field).append("\":{")
-                    .append("\"from\":").append(toJsonValue(from)).append(",")
-                    .append("\"to\":").append(toJsonValue(to)).append("}");
-            return false;
-        }
-        return first;
-    }
-
     private String validateProduct(Product p) {
         if (p.getName() == null || p.getName().trim().isEmpty()) {
             return "name must be non-empty";
@@ -269,6 +268,7 @@ public class ProductController {
     public ResponseEntity<?> createProduct(@RequestBody Product p) {
         try (Session s = sessionFactory.openSession()) {
             Transaction tx = s.beginTransaction();
+            productCatalogCache.invalidateOnCommit(s);
             try {
                 // Reject creation when initial quantity is <= 0
                 if (p.getQuantity() <= 0) {
@@ -316,12 +316,25 @@ public class ProductController {
 
     @PreAuthorize("hasRole('ADMIN')")
     @GetMapping("/frequent/{n}")
-    public ResponseEntity<?> getTopFrequent(@PathVariable int n) {
+    public ResponseEntity<?> getTopFrequent(@PathVariable int n,
+                                       @RequestParam(required = false) String window,
+                                       @RequestParam(required = false) String mode) {
         try {
             if (n <= 0) {
                 return ResponseEntity.badRequest().body("n must be >= 1");
             }
-            return ResponseEntity.ok(productAnalyticsService.getTopFrequent(n));
+            if ("approx".equals(mode)) {
+                if (window != null) {
+                    return ResponseEntity.badRequest().body("window is not supported with mode=approx");
+                }
+                return ResponseEntity.ok(productAnalyticsService.getApproxTopFrequent(n));
+            }
+            if (mode != null && !"exact".equals(mode)) {
+                return ResponseEntity.badRequest().body("mode must be exact or approx");
+            }
+            return ResponseEntity.ok(productAnalyticsService.getTopFrequent(n, window));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
@@ -329,12 +342,15 @@ public class ProductController {
 
     @PreAuthorize("hasRole('ADMIN')")
     @GetMapping("/recent/{n}")
-    public ResponseEntity<?> getTopRecent(@PathVariable int n) {
+    public ResponseEntity<?> getTopRecent(@PathVariable int n,
+                                       @RequestParam(required = false) String window) {
         try {
             if (n <= 0) {
                 return ResponseEntity.badRequest().body("n must be >= 1");
             }
-            return ResponseEntity.ok(productAnalyticsService.getTopRecent(n));
+            return ResponseEntity.ok(productAnalyticsService.getTopRecent(n, window));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
@@ -344,12 +360,15 @@ public class ProductController {
     @GetMapping("/profit/{n}")
     // this is most propular product; if it has been enter n; it means output the top n; such as top 3 product; instead of the third; 
     // same for most profitable product;
-    public ResponseEntity<?> getTopProfit(@PathVariable int n) {
+    public ResponseEntity<?> getTopProfit(@PathVariable int n,
+                                       @RequestParam(required = false) String window) {
         try {
             if (n <= 0) {
                 return ResponseEntity.badRequest().body("n must be >= 1");
             }
-            return ResponseEntity.ok(productAnalyticsService.getTopProfit(n));
+            return ResponseEntity.ok(productAnalyticsService.getTopProfit(n, window));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
@@ -359,12 +378,25 @@ public class ProductController {
     @GetMapping("/popular/{n}")
         // this is most propular product; if it has been enter n; it means output the top n; such as top 3 product; instead of the third; 
     // same for most profitable product;
-    public ResponseEntity<?> getTopPopular(@PathVariable int n) {
+    public ResponseEntity<?> getTopPopular(@PathVariable int n,
+                                       @RequestParam(required = false) String window,
+                                       @RequestParam(required = false) String mode) {
         try {
             if (n <= 0) {
                 return ResponseEntity.badRequest().body("n must be >= 1");
             }
-            return ResponseEntity.ok(productAnalyticsService.getTopPopular(n));
+            if ("approx".equals(mode)) {
+                if (window != null) {
+                    return ResponseEntity.badRequest().body("window is not supported with mode=approx");
+                }
+                return ResponseEntity.ok(productAnalyticsService.getApproxTopPopular(n));
+            }
+            if (mode != null && !"exact".equals(mode)) {
+                return ResponseEntity.badRequest().body("mode must be exact or approx");
+            }
+            return ResponseEntity.ok(productAnalyticsService.getTopPopular(n, window));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
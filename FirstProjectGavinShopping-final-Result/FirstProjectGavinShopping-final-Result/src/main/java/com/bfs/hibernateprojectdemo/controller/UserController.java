@@ -1,17 +1,19 @@
 package com.bfs.hibernateprojectdemo.controller;
 
 import com.bfs.hibernateprojectdemo.domain.User;
-import com.bfs.hibernateprojectdemo.security.DbUserDetailsService;
 import com.bfs.hibernateprojectdemo.security.ActiveUserRegistry;
+import com.bfs.hibernateprojectdemo.security.AuthenticatedUser;
 import com.bfs.hibernateprojectdemo.security.JwtService;
+import com.bfs.hibernateprojectdemo.security.LoginThrottle;
 import com.bfs.hibernateprojectdemo.service.LoginService;
 import com.bfs.hibernateprojectdemo.service.RegisterService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
+
 import java.util.HashMap;
 import java.util.Map;
 
@@ -21,18 +23,18 @@ public class UserController { // Fixed typo in class name
     private final RegisterService registerService;
     private final LoginService loginService;
     private final JwtService jwtService;
-    private final DbUserDetailsService userDetailsService;
     private final ActiveUserRegistry activeUserRegistry;
+    private final LoginThrottle loginThrottle;
 
     @Autowired
     public UserController(RegisterService registerService, LoginService loginService,
-                         JwtService jwtService, DbUserDetailsService userDetailsService,
-                         ActiveUserRegistry activeUserRegistry) {
+                         JwtService jwtService,
+                         ActiveUserRegistry activeUserRegistry, LoginThrottle loginThrottle) {
         this.registerService = registerService;
         this.loginService = loginService;
         this.jwtService = jwtService;
-        this.userDetailsService = userDetailsService;
         this.activeUserRegistry = activeUserRegistry;
+        this.loginThrottle = loginThrottle;
     }
 
     @PostMapping("/signup")
@@ -48,15 +50,16 @@ public class UserController { // Fixed typo in class name
     }
 
     @PostMapping("/login")
-    public ResponseEntity<?> login(@RequestBody User user) {
-        boolean successful = loginService.authenticate(user.getUsername(), user.getPassword());
-        if (!successful) {
+    public ResponseEntity<?> login(@RequestBody User user, HttpServletRequest request) {
+        // Refused with 429 before any hashing when the IP or username is over its rate
+        loginThrottle.acquire(user.getUsername(), request.getRemoteAddr());
+        AuthenticatedUser principal = loginService.authenticate(user.getUsername(), user.getPassword());
+        if (principal == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Incorrect credentials, please try again.");
         }
         
-        // Generate JWT token
-        UserDetails userDetails = userDetailsService.loadUserByUsername(user.getUsername());
-        String token = jwtService.generateToken(userDetails);
+        // Generate JWT token from the user loaded during authentication
+        String token = jwtService.generateToken(principal);
         // Set active user for single-session enforcement
         activeUserRegistry.setActiveUsername(user.getUsername());
         
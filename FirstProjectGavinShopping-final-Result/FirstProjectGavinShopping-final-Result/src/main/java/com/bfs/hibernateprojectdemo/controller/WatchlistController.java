@@ -1,8 +1,10 @@
 package com.bfs.hibernateprojectdemo.controller;
 
 import com.bfs.hibernateprojectdemo.domain.Product;
-import com.bfs.hibernateprojectdemo.domain.User;
 import com.bfs.hibernateprojectdemo.domain.Watchlist;
+import com.bfs.hibernateprojectdemo.security.AuthenticatedUser;
+import com.bfs.hibernateprojectdemo.security.CurrentUser;
+import com.bfs.hibernateprojectdemo.util.DuplicateKeys;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
@@ -13,7 +15,6 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
-import java.security.Principal;
 import java.util.List;
 
 import com.bfs.hibernateprojectdemo.dto.MessageResponse;
@@ -31,24 +32,17 @@ public class WatchlistController {
     }
 
     @GetMapping("/products/all")
-    public ResponseEntity<?> getWatchlist(Principal principal) {
+    public ResponseEntity<?> getWatchlist(@CurrentUser AuthenticatedUser currentUser) {
         // 1. Robust Principal Check
-        if (principal == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        if (currentUser == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
 
         try (Session s = sessionFactory.openSession()) {
-            // 2. Get User ID from username
-            User dbUser = s.createQuery("from User u where u.username = :un", User.class)
-                    .setParameter("un", principal.getName())
-                    .uniqueResult();
-
-            if (dbUser == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
-
-            // 3. Fetch Products
+            // 2. Fetch Products
             Query<Product> q = s.createQuery(
                     "select p from Product p where p.productId in (" +
                             " select w.productId from Watchlist w where w.userId = :uid" +
                             " ) and p.quantity > 0", Product.class);
-            q.setParameter("uid", dbUser.getId());
+            q.setParameter("uid", currentUser.getId());
             List<Product> products = q.list();
             if (products == null || products.isEmpty()) {
                 return ResponseEntity.ok(new com.bfs.hibernateprojectdemo.dto.MessageResponse("Your watchlist is empty"));
@@ -72,23 +66,13 @@ public class WatchlistController {
 
     @PostMapping("/product/{id}")
     public ResponseEntity<?> addToWatchlist(@PathVariable("id") Long productId,
-                                               Principal principal) {
-        if (principal == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                                               @CurrentUser AuthenticatedUser currentUser) {
+        if (currentUser == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                 .body(new MessageResponse("Unauthorized: please log in"));
 
         try (Session s = sessionFactory.openSession()) {
             Transaction tx = s.beginTransaction();
             try {
-                User dbUser = s.createQuery("from User u where u.username = :un", User.class)
-                        .setParameter("un", principal.getName())
-                        .uniqueResult();
-
-                if (dbUser == null) {
-                    tx.rollback();
-                    return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                            .body(new MessageResponse("Unauthorized: user not found"));
-                }
-
                 Product product = s.get(Product.class, productId);
                 if (product == null) {
                     tx.rollback();
@@ -98,13 +82,13 @@ public class WatchlistController {
 
                 Watchlist existing = s.createQuery(
                                 "from Watchlist w where w.userId = :uid and w.productId = :pid", Watchlist.class)
-                        .setParameter("uid", dbUser.getId())
+                        .setParameter("uid", currentUser.getId())
                         .setParameter("pid", productId)
                         .uniqueResult();
 
                 if (existing == null) {
                     Watchlist w = new Watchlist();
-                    w.setUserId(dbUser.getId());
+                    w.setUserId(currentUser.getId());
                     w.setProductId(productId);
                     s.save(w);
                     tx.commit();
@@ -116,6 +100,12 @@ public class WatchlistController {
                         .body(new MessageResponse("Item already in watchlist"));
             } catch (Exception e) {
                 if (tx.isActive()) tx.rollback();
+                // A concurrent add of the same product hit uk_watchlist_user_product; any other
+                // constraint violation (NOT NULL, a foreign key) is a real failure
+                if (DuplicateKeys.isDuplicateOn(e, Watchlist.UNIQUE_USER_PRODUCT)) {
+                    return ResponseEntity.status(HttpStatus.OK)
+                            .body(new MessageResponse("Item already in watchlist"));
+                }
                 e.printStackTrace();
                 return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                         .body(new MessageResponse("Failed to add to watchlist"));
@@ -125,25 +115,15 @@ public class WatchlistController {
 
     @DeleteMapping("/product/{id}")
     public ResponseEntity<?> removeFromWatchlist(@PathVariable("id") Long productId,
-                                                    Principal principal) {
-        if (principal == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                                                    @CurrentUser AuthenticatedUser currentUser) {
+        if (currentUser == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                 .body(new MessageResponse("Unauthorized: please log in"));
 
         try (Session s = sessionFactory.openSession()) {
             Transaction tx = s.beginTransaction();
             try {
-                User dbUser = s.createQuery("from User u where u.username = :un", User.class)
-                        .setParameter("un", principal.getName())
-                        .uniqueResult();
-
-                if (dbUser == null) {
-                    tx.rollback();
-                    return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                            .body(new MessageResponse("Unauthorized: user not found"));
-                }
-
                 int affected = s.createQuery("delete from Watchlist where userId = :uid and productId = :pid")
-                        .setParameter("uid", dbUser.getId())
+                        .setParameter("uid", currentUser.getId())
                         .setParameter("pid", productId)
                         .executeUpdate();
 
@@ -162,4 +142,4 @@ public class WatchlistController {
             }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,27 @@
+package com.bfs.hibernateprojectdemo.domain;
+
+import javax.persistence.*;
+
+/**
+ * How far the local audit journal has been shipped into audit_log. Updated in the same transaction
+ * as the rows it covers, so a restart resumes exactly after the last shipped record.
+ */
+@Entity
+@Table(name = "audit_journal_checkpoint")
+public class AuditJournalCheckpoint {
+
+    // One row per journal directory
+    @Id
+    @Column(length = 200)
+    private String journal;
+
+    // Sequence number of the next record to ship
+    @Column(nullable = false)
+    private long nextSeq;
+
+    // getters/setters
+    public String getJournal() { return journal; }
+    public void setJournal(String journal) { this.journal = journal; }
+    public long getNextSeq() { return nextSeq; }
+    public void setNextSeq(long nextSeq) { this.nextSeq = nextSeq; }
+}
@@ -4,10 +4,18 @@ import javax.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "audit_log")
+// Keyset order (timestamp, id) ends every index: history of one resource, of one user, or of everything, newest first
+@Table(name = "audit_log", indexes = {
+        @Index(name = "idx_audit_resource", columnList = "resourceType, resourceId, timestamp, id"),
+        @Index(name = "idx_audit_user", columnList = "userId, timestamp, id"),
+        @Index(name = "idx_audit_time", columnList = "timestamp, id")
+})
 public class AuditLog {
+    // Pooled table ids like Order, so the audit writer's batches go out as one JDBC insert batch
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "audit_log_id")
+    @TableGenerator(name = "audit_log_id", table = "id_generator", pkColumnName = "gen_name",
+            valueColumnName = "next_val", pkColumnValue = "audit_log", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
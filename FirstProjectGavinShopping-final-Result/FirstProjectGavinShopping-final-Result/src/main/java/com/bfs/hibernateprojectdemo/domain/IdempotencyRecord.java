@@ -0,0 +1,46 @@
+package com.bfs.hibernateprojectdemo.domain;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Outcome of a request carrying an Idempotency-Key, kept until {@code expiresAt} so retries replay it.
+ */
+@Entity
+@Table(name = "idempotency_keys", indexes = @Index(name = "idx_idempotency_expires", columnList = "expiresAt"))
+public class IdempotencyRecord {
+
+    // "<username>:<Idempotency-Key>" so clients cannot collide across accounts
+    @Id
+    @Column(length = 200)
+    private String scopedKey;
+
+    @Column(nullable = false, length = 64)
+    private String requestHash;
+
+    @Column
+    private int responseStatus;
+
+    @Column(length = 2048)
+    private String responseBody;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+
+    // getters/setters
+    public String getScopedKey() { return scopedKey; }
+    public void setScopedKey(String scopedKey) { this.scopedKey = scopedKey; }
+    public String getRequestHash() { return requestHash; }
+    public void setRequestHash(String requestHash) { this.requestHash = requestHash; }
+    public int getResponseStatus() { return responseStatus; }
+    public void setResponseStatus(int responseStatus) { this.responseStatus = responseStatus; }
+    public String getResponseBody() { return responseBody; }
+    public void setResponseBody(String responseBody) { this.responseBody = responseBody; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+    public LocalDateTime getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(LocalDateTime expiresAt) { this.expiresAt = expiresAt; }
+}
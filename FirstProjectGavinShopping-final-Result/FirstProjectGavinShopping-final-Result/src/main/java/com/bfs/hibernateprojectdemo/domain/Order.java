@@ -3,16 +3,27 @@ package com.bfs.hibernateprojectdemo.domain;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.BatchSize;
 
 import javax.persistence.*;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 @Entity
-@Table(name = "orders")
+// Indexes follow the keyset listings: per user, per status and global, all newest first
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_user_time", columnList = "user_id, orderTime, id"),
+        @Index(name = "idx_orders_status_time", columnList = "status, orderTime"),
+        @Index(name = "idx_orders_time", columnList = "orderTime, id")
+})
 public class Order {
 
+    // Table-backed pooled ids (allocated 50 at a time) instead of IDENTITY, which would disable JDBC insert batching
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "order_id")
+    @TableGenerator(name = "order_id", table = "id_generator", pkColumnName = "gen_name",
+            valueColumnName = "next_val", pkColumnValue = "orders", allocationSize = 50)
     private Long id;
 
     // Getters and setters
@@ -22,45 +33,23 @@ public class Order {
     private Long userId;
     @Setter
     @Getter
-    private Long productId;
-    @Getter
-    @Setter
-    private int quantity;
-    @Setter
-    @Getter
     private String status;
     @Setter
     @Getter
     private LocalDateTime orderTime;
 
-    // Snapshot prices at time of purchase to prevent later adjustments affecting past orders
-    @Setter
-    @Getter
-    @Column(name = "retail_price_at_purchase")
-    private double retailPriceAtPurchase;
+    // One row per product in the basket; saved and deleted together with the order
+    @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, orphanRemoval = true)
+    @OrderBy("productId ASC")
+    @BatchSize(size = 50)
+    private List<OrderLine> lines = new ArrayList<>();
 
-    @Setter
-    @Getter
-    @Column(name = "wholesale_price_at_purchase")
-    private double wholesalePriceAtPurchase;
-    
-    // Snapshot product name and description at time of purchase
-    @Setter
-    @Getter
-    @Column(name = "product_name_at_purchase")
-    private String productNameAtPurchase;
-
-    @Setter
-    @Getter
-    @Column(name = "product_description_at_purchase", length = 2048)
-    private String productDescriptionAtPurchase;
-    
     // Explicit getters and setters (Lombok may not be generating them properly)
     public Long getId() {
         return id;
     }
     
-    // Note: getUserId, getProductId, getQuantity, getStatus, getOrderTime 
+    // Note: getUserId, getStatus, getOrderTime
     // are generated by @Getter annotations above
     // If they don't work, add explicit methods below
     
@@ -72,22 +61,6 @@ public class Order {
         this.userId = userId;
     }
     
-    public Long getProductId() {
-        return productId;
-    }
-    
-    public void setProductId(Long productId) {
-        this.productId = productId;
-    }
-    
-    public int getQuantity() {
-        return quantity;
-    }
-    
-    public void setQuantity(int quantity) {
-        this.quantity = quantity;
-    }
-    
     public String getStatus() {
         return status;
     }
@@ -104,6 +77,24 @@ public class Order {
         this.orderTime = orderTime;
     }
 
+    public List<OrderLine> getLines() {
+        return lines;
+    }
+
+    public void addLine(OrderLine line) {
+        line.setOrder(this);
+        lines.add(line);
+    }
+
+    // Units across all lines
+    public int getTotalQuantity() {
+        int total = 0;
+        for (OrderLine line : lines) {
+            total += line.getQuantity();
+        }
+        return total;
+    }
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", insertable = false, updatable = false)
     @JsonIgnore // Don't serialize the full complex User object if you already have userId above
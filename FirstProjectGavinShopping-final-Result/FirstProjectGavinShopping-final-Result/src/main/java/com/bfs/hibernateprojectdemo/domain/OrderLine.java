@@ -0,0 +1,61 @@
+package com.bfs.hibernateprojectdemo.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import javax.persistence.*;
+
+@Entity
+// productId + quantity covers the per-product analytics aggregates without touching the rows
+@Table(name = "order_lines", indexes = {
+        @Index(name = "idx_order_lines_order", columnList = "order_id"),
+        @Index(name = "idx_order_lines_product", columnList = "productId, quantity")
+})
+public class OrderLine {
+
+    // Same pooled table ids as Order so a basket's lines go out in one insert batch
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "order_line_id")
+    @TableGenerator(name = "order_line_id", table = "id_generator", pkColumnName = "gen_name",
+            valueColumnName = "next_val", pkColumnValue = "order_lines", allocationSize = 50)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "order_id", nullable = false)
+    @JsonIgnore
+    private Order order;
+
+    private Long productId;
+
+    private int quantity;
+
+    // Snapshot prices at time of purchase to prevent later adjustments affecting past orders
+    @Column(name = "retail_price_at_purchase")
+    private double retailPriceAtPurchase;
+
+    @Column(name = "wholesale_price_at_purchase")
+    private double wholesalePriceAtPurchase;
+
+    // Snapshot product name and description at time of purchase
+    @Column(name = "product_name_at_purchase")
+    private String productNameAtPurchase;
+
+    @Column(name = "product_description_at_purchase", length = 2048)
+    private String productDescriptionAtPurchase;
+
+    // getters/setters
+    public Long getId() { return id; }
+    public Order getOrder() { return order; }
+    public void setOrder(Order order) { this.order = order; }
+    public Long getProductId() { return productId; }
+    public void setProductId(Long productId) { this.productId = productId; }
+    public int getQuantity() { return quantity; }
+    public void setQuantity(int quantity) { this.quantity = quantity; }
+    public double getRetailPriceAtPurchase() { return retailPriceAtPurchase; }
+    public void setRetailPriceAtPurchase(double retailPriceAtPurchase) { this.retailPriceAtPurchase = retailPriceAtPurchase; }
+    public double getWholesalePriceAtPurchase() { return wholesalePriceAtPurchase; }
+    public void setWholesalePriceAtPurchase(double wholesalePriceAtPurchase) { this.wholesalePriceAtPurchase = wholesalePriceAtPurchase; }
+    public String getProductNameAtPurchase() { return productNameAtPurchase; }
+    public void setProductNameAtPurchase(String productNameAtPurchase) { this.productNameAtPurchase = productNameAtPurchase; }
+    public String getProductDescriptionAtPurchase() { return productDescriptionAtPurchase; }
+    public void setProductDescriptionAtPurchase(String productDescriptionAtPurchase) { this.productDescriptionAtPurchase = productDescriptionAtPurchase; }
+}
@@ -1,11 +1,19 @@
 package com.bfs.hibernateprojectdemo.domain;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import javax.persistence.*;
 
+// HQL bulk updates evict this region automatically; InventoryService evicts after its JDBC batch
 @Entity
 @Table(name = "products")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "products")
 public class Product {
 
+    // Query-cache region for product-by-id lookups
+    public static final String QUERY_REGION = "product-queries";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long productId;
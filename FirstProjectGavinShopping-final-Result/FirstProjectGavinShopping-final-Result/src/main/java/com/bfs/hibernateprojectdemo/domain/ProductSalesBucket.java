@@ -0,0 +1,83 @@
+package com.bfs.hibernateprojectdemo.domain;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Completed-order totals for one product in one hour ('H') or one day ('D'), keyed by the order's
+ * orderTime. Windowed rankings sum the buckets in range instead of scanning order history.
+ */
+@Entity
+@Table(name = "product_sales_buckets")
+@IdClass(ProductSalesBucket.Key.class)
+public class ProductSalesBucket {
+
+    public static final String HOURLY = "H";
+    public static final String DAILY = "D";
+
+    // Primary key columns in range-scan order: granularity, then bucket start
+    @Id
+    @Column(length = 1)
+    private String granularity;
+
+    @Id
+    private LocalDateTime bucketStart;
+
+    @Id
+    private Long productId;
+
+    @Column
+    private String productName;
+
+    @Column(nullable = false)
+    private long orderCount;
+
+    @Column(nullable = false)
+    private long units;
+
+    @Column(nullable = false)
+    private double profit;
+
+    @Column(nullable = false)
+    private LocalDateTime lastOrderTime;
+
+    // getters/setters
+    public String getGranularity() { return granularity; }
+    public void setGranularity(String granularity) { this.granularity = granularity; }
+    public LocalDateTime getBucketStart() { return bucketStart; }
+    public void setBucketStart(LocalDateTime bucketStart) { this.bucketStart = bucketStart; }
+    public Long getProductId() { return productId; }
+    public void setProductId(Long productId) { this.productId = productId; }
+    public String getProductName() { return productName; }
+    public void setProductName(String productName) { this.productName = productName; }
+    public long getOrderCount() { return orderCount; }
+    public void setOrderCount(long orderCount) { this.orderCount = orderCount; }
+    public long getUnits() { return units; }
+    public void setUnits(long units) { this.units = units; }
+    public double getProfit() { return profit; }
+    public void setProfit(double profit) { this.profit = profit; }
+    public LocalDateTime getLastOrderTime() { return lastOrderTime; }
+    public void setLastOrderTime(LocalDateTime lastOrderTime) { this.lastOrderTime = lastOrderTime; }
+
+    public static class Key implements Serializable {
+        private String granularity;
+        private LocalDateTime bucketStart;
+        private Long productId;
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return Objects.equals(granularity, k.granularity) && Objects.equals(bucketStart, k.bucketStart)
+                    && Objects.equals(productId, k.productId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(granularity, bucketStart, productId);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.bfs.hibernateprojectdemo.domain;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Per-product totals over completed orders, maintained by ProductSalesStatsService when an order
+ * is completed. One index per top-N ranking so each is an index scan with LIMIT.
+ */
+@Entity
+@Table(name = "product_sales_stats", indexes = {
+        @Index(name = "idx_sales_order_count", columnList = "orderCount desc, productId"),
+        @Index(name = "idx_sales_units", columnList = "units desc, productId"),
+        @Index(name = "idx_sales_profit", columnList = "profit desc, productId"),
+        @Index(name = "idx_sales_last_order", columnList = "lastOrderTime desc, productId")
+})
+public class ProductSalesStats {
+
+    // Same id as the product; not generated
+    @Id
+    private Long productId;
+
+    // Name on the most recent completed order, so rankings need no join and survive product deletion
+    @Column
+    private String productName;
+
+    @Column(nullable = false)
+    private long orderCount;
+
+    @Column(nullable = false)
+    private long units;
+
+    // Sum of (retail - wholesale) * quantity from the purchase-time snapshots
+    @Column(nullable = false)
+    private double profit;
+
+    @Column(nullable = false)
+    private LocalDateTime lastOrderTime;
+
+    // getters/setters
+    public Long getProductId() { return productId; }
+    public void setProductId(Long productId) { this.productId = productId; }
+    public String getProductName() { return productName; }
+    public void setProductName(String productName) { this.productName = productName; }
+    public long getOrderCount() { return orderCount; }
+    public void setOrderCount(long orderCount) { this.orderCount = orderCount; }
+    public long getUnits() { return units; }
+    public void setUnits(long units) { this.units = units; }
+    public double getProfit() { return profit; }
+    public void setProfit(double profit) { this.profit = profit; }
+    public LocalDateTime getLastOrderTime() { return lastOrderTime; }
+    public void setLastOrderTime(LocalDateTime lastOrderTime) { this.lastOrderTime = lastOrderTime; }
+}
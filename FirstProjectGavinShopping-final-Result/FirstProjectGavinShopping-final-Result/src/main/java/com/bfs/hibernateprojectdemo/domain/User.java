@@ -5,12 +5,20 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 import javax.persistence.*;
 import java.util.List;
 
+// Looked up by username on every authenticated request: the natural-id cache resolves the id,
+// the entity region the row
 @Entity
 @Table(name = "users")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "users")
+@NaturalIdCache(region = "user-natural-ids")
 public class User {
 
 
@@ -20,7 +28,8 @@ public class User {
     @Setter
     private Long id;
     @JsonProperty("username")
-    @Column(name = "username", unique = true, nullable=false)
+    @NaturalId
+    @Column(name = "username", nullable=false)
     private String username;
 
     @Setter
@@ -5,9 +5,13 @@ import lombok.Setter;
 import javax.persistence.*;
 
 @Entity
-@Table(name = "watchlist")
+// One entry per user and product; also serves the (user_id, product_id) lookups
+@Table(name = "watchlist", uniqueConstraints = @UniqueConstraint(
+        name = Watchlist.UNIQUE_USER_PRODUCT, columnNames = {"user_id", "product_id"}))
 public class Watchlist {
 
+    public static final String UNIQUE_USER_PRODUCT = "uk_watchlist_user_product";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
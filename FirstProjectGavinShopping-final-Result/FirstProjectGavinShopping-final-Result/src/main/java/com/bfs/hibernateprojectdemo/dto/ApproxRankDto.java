@@ -0,0 +1,28 @@
+package com.bfs.hibernateprojectdemo.dto;
+
+// One row of an approximate top-N ranking: the true total lies in [lowerBound, estimate]
+public class ApproxRankDto {
+    private Long productId;
+    private String name;
+    private long estimate;
+    private long lowerBound;
+
+    public ApproxRankDto() {
+    }
+
+    public ApproxRankDto(Long productId, String name, long estimate, long lowerBound) {
+        this.productId = productId;
+        this.name = name;
+        this.estimate = estimate;
+        this.lowerBound = lowerBound;
+    }
+
+    public Long getProductId() { return productId; }
+    public void setProductId(Long productId) { this.productId = productId; }
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+    public long getEstimate() { return estimate; }
+    public void setEstimate(long estimate) { this.estimate = estimate; }
+    public long getLowerBound() { return lowerBound; }
+    public void setLowerBound(long lowerBound) { this.lowerBound = lowerBound; }
+}
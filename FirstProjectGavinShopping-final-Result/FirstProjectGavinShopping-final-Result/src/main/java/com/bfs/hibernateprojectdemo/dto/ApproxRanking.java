@@ -0,0 +1,27 @@
+package com.bfs.hibernateprojectdemo.dto;
+
+import java.util.List;
+
+// Approximate top-N result; no estimate exceeds its true total by more than errorBound, with the given confidence
+public class ApproxRanking {
+    private List<ApproxRankDto> items;
+    private long total;
+    private long errorBound;
+    private double confidence;
+
+    public ApproxRanking(List<ApproxRankDto> items, long total, long errorBound, double confidence) {
+        this.items = items;
+        this.total = total;
+        this.errorBound = errorBound;
+        this.confidence = confidence;
+    }
+
+    public List<ApproxRankDto> getItems() { return items; }
+    public void setItems(List<ApproxRankDto> items) { this.items = items; }
+    public long getTotal() { return total; }
+    public void setTotal(long total) { this.total = total; }
+    public long getErrorBound() { return errorBound; }
+    public void setErrorBound(long errorBound) { this.errorBound = errorBound; }
+    public double getConfidence() { return confidence; }
+    public void setConfidence(double confidence) { this.confidence = confidence; }
+}
@@ -0,0 +1,17 @@
+package com.bfs.hibernateprojectdemo.dto;
+
+public class OrderLineViewDto {
+    private Long productId;
+    private int quantity;
+    private String productName;
+    private String productDescription;
+
+    public Long getProductId() { return productId; }
+    public void setProductId(Long productId) { this.productId = productId; }
+    public int getQuantity() { return quantity; }
+    public void setQuantity(int quantity) { this.quantity = quantity; }
+    public String getProductName() { return productName; }
+    public void setProductName(String productName) { this.productName = productName; }
+    public String getProductDescription() { return productDescription; }
+    public void setProductDescription(String productDescription) { this.productDescription = productDescription; }
+}
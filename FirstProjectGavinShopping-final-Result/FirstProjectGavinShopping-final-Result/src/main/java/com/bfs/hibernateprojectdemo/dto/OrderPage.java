@@ -0,0 +1,19 @@
+package com.bfs.hibernateprojectdemo.dto;
+
+import java.util.List;
+
+// One page of an order listing; nextCursor is null on the last page
+public class OrderPage<T> {
+    private List<T> items;
+    private String nextCursor;
+
+    public OrderPage(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() { return items; }
+    public void setItems(List<T> items) { this.items = items; }
+    public String getNextCursor() { return nextCursor; }
+    public void setNextCursor(String nextCursor) { this.nextCursor = nextCursor; }
+}
@@ -1,28 +1,20 @@
 package com.bfs.hibernateprojectdemo.dto;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 public class OrderViewDto {
     private Long id;
-    private Long productId;
-    private int quantity;
     private String status;
     private LocalDateTime orderTime;
-    private String productName;
-    private String productDescription;
+    private List<OrderLineViewDto> lines;
 
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
-    public Long getProductId() { return productId; }
-    public void setProductId(Long productId) { this.productId = productId; }
-    public int getQuantity() { return quantity; }
-    public void setQuantity(int quantity) { this.quantity = quantity; }
     public String getStatus() { return status; }
     public void setStatus(String status) { this.status = status; }
     public LocalDateTime getOrderTime() { return orderTime; }
     public void setOrderTime(LocalDateTime orderTime) { this.orderTime = orderTime; }
-    public String getProductName() { return productName; }
-    public void setProductName(String productName) { this.productName = productName; }
-    public String getProductDescription() { return productDescription; }
-    public void setProductDescription(String productDescription) { this.productDescription = productDescription; }
-}
\ No newline at end of file
+    public List<OrderLineViewDto> getLines() { return lines; }
+    public void setLines(List<OrderLineViewDto> lines) { this.lines = lines; }
+}
@@ -0,0 +1,44 @@
+package com.bfs.hibernateprojectdemo.dto;
+
+import java.time.LocalDateTime;
+
+// One row of an admin top-N ranking, with the scores it was ranked by
+public class ProductRankDto {
+    private Long productId;
+    private String name;
+    private long orderCount;
+    private long units;
+    private double profit;
+    private LocalDateTime lastOrderTime;
+
+    public ProductRankDto() {
+    }
+
+    public ProductRankDto(Long productId, String name, long orderCount, long units, double profit,
+                          LocalDateTime lastOrderTime) {
+        this.productId = productId;
+        this.name = name;
+        this.orderCount = orderCount;
+        this.units = units;
+        this.profit = profit;
+        this.lastOrderTime = lastOrderTime;
+    }
+
+    // Windowed rankings aggregate the scores first and fill in the name afterwards
+    public ProductRankDto(Long productId, long orderCount, long units, double profit, LocalDateTime lastOrderTime) {
+        this(productId, null, orderCount, units, profit, lastOrderTime);
+    }
+
+    public Long getProductId() { return productId; }
+    public void setProductId(Long productId) { this.productId = productId; }
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+    public long getOrderCount() { return orderCount; }
+    public void setOrderCount(long orderCount) { this.orderCount = orderCount; }
+    public long getUnits() { return units; }
+    public void setUnits(long units) { this.units = units; }
+    public double getProfit() { return profit; }
+    public void setProfit(double profit) { this.profit = profit; }
+    public LocalDateTime getLastOrderTime() { return lastOrderTime; }
+    public void setLastOrderTime(LocalDateTime lastOrderTime) { this.lastOrderTime = lastOrderTime; }
+}
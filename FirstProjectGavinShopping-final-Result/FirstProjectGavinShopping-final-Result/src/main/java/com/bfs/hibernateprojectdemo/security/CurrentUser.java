@@ -0,0 +1,15 @@
+package com.bfs.hibernateprojectdemo.security;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Binds a handler parameter of type {@link AuthenticatedUser} to the request's principal;
+ * null when the request is not authenticated.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CurrentUser {
+}
@@ -4,13 +4,9 @@ package com.bfs.hibernateprojectdemo.security;
 import com.bfs.hibernateprojectdemo.domain.User;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.*;
 import org.springframework.stereotype.Service;
 
-import java.util.Collections;
-
 @Service
 public class DbUserDetailsService implements UserDetailsService {
     private final SessionFactory sessionFactory;
@@ -19,15 +15,9 @@ public class DbUserDetailsService implements UserDetailsService {
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         try (Session s = sessionFactory.openSession()) {
-            User u = s.createQuery("from User u where u.username = :un", User.class)
-                    .setParameter("un", username).uniqueResult();
+            User u = s.bySimpleNaturalId(User.class).load(username);
             if (u == null) throw new UsernameNotFoundException("User not found");
-            GrantedAuthority auth = new SimpleGrantedAuthority("ROLE_" + u.getRole());
-            return org.springframework.security.core.userdetails.User
-                    .withUsername(u.getUsername())
-                    .password(u.getPassword())
-                    .authorities(Collections.singleton(auth))
-                    .build();
+            return new AuthenticatedUser(u.getId(), u.getUsername(), u.getPassword(), u.getRole());
         }
     }
 }
@@ -3,7 +3,7 @@ package com.bfs.hibernateprojectdemo.security;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -24,6 +24,9 @@ public class JwtAuthFilter extends OncePerRequestFilter {
     @Autowired
     private DbUserDetailsService userDetailsService;
 
+    @Autowired
+    private UserClaimsCache userClaimsCache;
+
     @Autowired
     private ActiveUserRegistry activeUserRegistry;
 
@@ -34,33 +37,47 @@ public class JwtAuthFilter extends OncePerRequestFilter {
             throws ServletException, IOException {
 
         String authHeader = request.getHeader("Authorization");
-        String token = null;
-        String username = null;
+        AuthenticatedUser principal = null;
 
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            token = authHeader.substring(7);
-            username = jwtService.extractUsername(token);
+            // Signature and expiry are verified here; the principal comes from the token's claims
+            principal = jwtService.parseToken(authHeader.substring(7));
         }
 
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-            if (jwtService.validateToken(token, userDetails)) {
-                // Enforce single active user: reject tokens for other usernames
-                String active = activeUserRegistry.getActiveUsername();
-                if (active != null && !active.equals(username)) {
-                    response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-                    response.setContentType("application/json");
-                    response.getWriter().write("{\"message\":\"Another user is currently logged in; please log in again.\"}");
-                    return;
-                }
-                UsernamePasswordAuthenticationToken auth =
-                        new UsernamePasswordAuthenticationToken(
-                                userDetails, null, userDetails.getAuthorities());
-                auth.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                SecurityContextHolder.getContext().setAuthentication(auth);
+        if (principal != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+            if (principal.getId() == null) {
+                // Token issued before id/role claims were added
+                principal = loadLegacy(principal.getUsername());
+            } else if (!userClaimsCache.isCurrent(principal)) {
+                principal = null;
+            }
+            if (principal == null) {
+                filterChain.doFilter(request, response);
+                return;
+            }
+            // Enforce single active user: reject tokens for other usernames
+            String active = activeUserRegistry.getActiveUsername();
+            if (active != null && !active.equals(principal.getUsername())) {
+                response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+                response.setContentType("application/json");
+                response.getWriter().write("{\"message\":\"Another user is currently logged in; please log in again.\"}");
+                return;
             }
+            UsernamePasswordAuthenticationToken auth =
+                    new UsernamePasswordAuthenticationToken(
+                            principal, null, principal.getAuthorities());
+            auth.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+            SecurityContextHolder.getContext().setAuthentication(auth);
         }
 
         filterChain.doFilter(request, response);
     }
+
+    private AuthenticatedUser loadLegacy(String username) {
+        try {
+            return (AuthenticatedUser) userDetailsService.loadUserByUsername(username);
+        } catch (UsernameNotFoundException e) {
+            return null;
+        }
+    }
 }
\ No newline at end of file
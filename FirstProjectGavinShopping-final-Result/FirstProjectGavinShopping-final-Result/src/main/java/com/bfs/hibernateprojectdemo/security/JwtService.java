@@ -1,23 +1,63 @@
 package com.bfs.hibernateprojectdemo.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 import java.security.Key;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
+
+/**
+ * Issues and verifies JWTs. The signing key and parser are built once; a token is parsed at most
+ * once per request, and recently verified tokens are remembered (bounded, until they expire) so
+ * repeat requests skip the HMAC check entirely.
+ */
 @Service
 public class JwtService {
 
     private static final String SECRET_KEY = "123456789012345678901234567890fdafdfagfagasdfgaserwqtvb";
 
-    private Key getSignKey() {
-        return Keys.hmacShaKeyFor(SECRET_KEY.getBytes());
+    // Carried in the token so requests can be authenticated without loading the user
+    static final String CLAIM_USER_ID = "uid";
+    static final String CLAIM_ROLE = "role";
+
+    private final Key signKey = Keys.hmacShaKeyFor(SECRET_KEY.getBytes());
+    private final JwtParser parser = Jwts.parserBuilder().setSigningKey(signKey).build();
+    // null when disabled (size 0)
+    private final Cache<String, Verified> verified;
+
+    public JwtService(@Value("${security.jwt.verified-cache-size:10000}") long verifiedCacheSize) {
+        this.verified = verifiedCacheSize <= 0 ? null : Caffeine.newBuilder()
+                .maximumSize(verifiedCacheSize)
+                .expireAfter(new Expiry<String, Verified>() {
+                    @Override
+                    public long expireAfterCreate(String token, Verified v, long currentTime) {
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, v.expiresAtMillis - System.currentTimeMillis()));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String token, Verified v, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String token, Verified v, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
     }
 
     public String extractUsername(String token) {
@@ -34,19 +74,16 @@ public class JwtService {
     }
 
     private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSignKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-    }
-
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+        return parser.parseClaimsJws(token).getBody();
     }
 
     public String generateToken(UserDetails userDetails) {
         Map<String, Object> claims = new HashMap<>();
+        if (userDetails instanceof AuthenticatedUser) {
+            AuthenticatedUser user = (AuthenticatedUser) userDetails;
+            claims.put(CLAIM_USER_ID, user.getId());
+            claims.put(CLAIM_ROLE, user.getRole());
+        }
         return createToken(claims, userDetails.getUsername());
     }
 
@@ -56,12 +93,53 @@ public class JwtService {
                 .setSubject(subject)
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + 1000 * 60 * 60 * 10))
-                .signWith(getSignKey(), SignatureAlgorithm.HS256)
+                .signWith(signKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
+    /**
+     * Verifies the token's signature and expiry and builds the principal from its claims.
+     * Tokens issued before the id/role claims existed yield a principal with a null id.
+     *
+     * @return null if the token is malformed, forged or expired
+     */
+    public AuthenticatedUser parseToken(String token) {
+        if (verified != null) {
+            Verified hit = verified.getIfPresent(token);
+            // The cache expires entries lazily, so re-check expiry on a hit
+            if (hit != null && hit.expiresAtMillis > System.currentTimeMillis()) return hit.principal;
+        }
+        Claims claims;
+        try {
+            claims = extractAllClaims(token);
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+        if (claims.getSubject() == null) return null;
+        Long userId = claims.get(CLAIM_USER_ID, Long.class);
+        String role = claims.get(CLAIM_ROLE, String.class);
+        AuthenticatedUser principal = userId == null || role == null
+                ? new AuthenticatedUser(null, claims.getSubject(), null, "USER")
+                : new AuthenticatedUser(userId, claims.getSubject(), null, role);
+        // Only claim-bearing tokens are remembered; legacy ones are resolved from the database
+        if (verified != null && principal.getId() != null && claims.getExpiration() != null) {
+            verified.put(token, new Verified(principal, claims.getExpiration().getTime()));
+        }
+        return principal;
+    }
+
     public boolean validateToken(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return username.equals(userDetails.getUsername()) && !isTokenExpired(token);
+        AuthenticatedUser principal = parseToken(token);
+        return principal != null && principal.getUsername().equals(userDetails.getUsername());
+    }
+
+    private static final class Verified {
+        final AuthenticatedUser principal;
+        final long expiresAtMillis;
+
+        Verified(AuthenticatedUser principal, long expiresAtMillis) {
+            this.principal = principal;
+            this.expiresAtMillis = expiresAtMillis;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,112 @@
+package com.bfs.hibernateprojectdemo.security;
+
+import com.bfs.hibernateprojectdemo.exception.TooManyRequestsException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token buckets for /login, one per client IP and one per username. Every attempt takes a token
+ * from both; an empty bucket refuses the attempt with 429 before any password is hashed. Idle
+ * buckets are dropped once they would have refilled anyway.
+ */
+@Component
+public class LoginThrottle {
+
+    private final Limit ipLimit;
+    private final Limit userLimit;
+    private final Cache<String, Bucket> buckets;
+
+    private final LongAdder throttledByIp = new LongAdder();
+    private final LongAdder throttledByUser = new LongAdder();
+
+    public LoginThrottle(@Value("${security.login.throttle.ip.capacity:20}") int ipCapacity,
+                         @Value("${security.login.throttle.ip.per-minute:60}") int ipPerMinute,
+                         @Value("${security.login.throttle.username.capacity:5}") int userCapacity,
+                         @Value("${security.login.throttle.username.per-minute:5}") int userPerMinute,
+                         @Value("${security.login.throttle.max-keys:100000}") long maxKeys) {
+        this.ipLimit = new Limit(ipCapacity, ipPerMinute);
+        this.userLimit = new Limit(userCapacity, userPerMinute);
+        long idleNanos = Math.max(ipLimit.fullRefillNanos(), userLimit.fullRefillNanos());
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(Duration.ofNanos(Math.max(idleNanos, 1)))
+                .build();
+    }
+
+    /** @throws TooManyRequestsException if either the IP or the username is out of tokens */
+    public void acquire(String username, String clientIp) {
+        if (clientIp != null) {
+            long wait = buckets.get("ip:" + clientIp, k -> new Bucket(ipLimit)).tryTake();
+            if (wait > 0) {
+                throttledByIp.increment();
+                throw throttled(wait);
+            }
+        }
+        if (username != null) {
+            long wait = buckets.get("user:" + username, k -> new Bucket(userLimit)).tryTake();
+            if (wait > 0) {
+                throttledByUser.increment();
+                throw throttled(wait);
+            }
+        }
+    }
+
+    private static TooManyRequestsException throttled(long waitNanos) {
+        return new TooManyRequestsException("Too many login attempts, please try again later.",
+                Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1)));
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("trackedKeys", buckets.estimatedSize());
+        out.put("throttledByIp", throttledByIp.sum());
+        out.put("throttledByUsername", throttledByUser.sum());
+        return out;
+    }
+
+    private static final class Limit {
+        final double capacity;
+        final double tokensPerNano;
+
+        Limit(int capacity, int perMinute) {
+            this.capacity = capacity;
+            this.tokensPerNano = perMinute / (double) TimeUnit.MINUTES.toNanos(1);
+        }
+
+        long fullRefillNanos() {
+            return (long) (capacity / tokensPerNano);
+        }
+    }
+
+    private static final class Bucket {
+        private final Limit limit;
+        private double tokens;
+        private long refilledAt;
+
+        Bucket(Limit limit) {
+            this.limit = limit;
+            this.tokens = limit.capacity;
+            this.refilledAt = System.nanoTime();
+        }
+
+        // 0 if a token was taken, otherwise nanos until one is available
+        synchronized long tryTake() {
+            long now = System.nanoTime();
+            tokens = Math.min(limit.capacity, tokens + (now - refilledAt) * limit.tokensPerNano);
+            refilledAt = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) / limit.tokensPerNano);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.bfs.hibernateprojectdemo.security;
+
+import com.bfs.hibernateprojectdemo.exception.TooManyRequestsException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs BCrypt checks on a small fixed pool with a bounded queue, so a burst of logins can use at
+ * most security.login.hash-threads cores instead of every Tomcat worker. When the queue is full, or
+ * a check waits past the timeout, the login is refused with 429 rather than left queued.
+ */
+@Component
+public class PasswordVerifier {
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMillis;
+
+    private final LongAdder verified = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder hashNanosTotal = new LongAdder();
+    private final LongAccumulator hashNanosMax = new LongAccumulator(Math::max, 0L);
+    private final LongAdder waitNanosTotal = new LongAdder();
+    private final LongAccumulator waitNanosMax = new LongAccumulator(Math::max, 0L);
+
+    public PasswordVerifier(PasswordEncoder passwordEncoder,
+                            @Value("${security.login.hash-threads:2}") int threads,
+                            @Value("${security.login.hash-queue-capacity:64}") int queueCapacity,
+                            @Value("${security.login.hash-timeout-ms:3000}") long timeoutMillis) {
+        this.passwordEncoder = passwordEncoder;
+        this.timeoutMillis = timeoutMillis;
+        AtomicInteger seq = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "password-verifier-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /** @throws TooManyRequestsException if the pool is saturated or the check timed out */
+    public boolean matches(String rawPassword, String encodedPassword) {
+        long submitted = System.nanoTime();
+        Future<Boolean> result;
+        try {
+            result = executor.submit(() -> {
+                long start = System.nanoTime();
+                waitNanosTotal.add(start - submitted);
+                waitNanosMax.accumulate(start - submitted);
+                try {
+                    return passwordEncoder.matches(rawPassword, encodedPassword);
+                } finally {
+                    long took = System.nanoTime() - start;
+                    hashNanosTotal.add(took);
+                    hashNanosMax.accumulate(took);
+                    verified.increment();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new TooManyRequestsException("Too many logins in progress, please try again shortly.", 1);
+        }
+        try {
+            return result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Drops it from the queue if it has not started yet
+            result.cancel(false);
+            timedOut.increment();
+            throw new TooManyRequestsException("Too many logins in progress, please try again shortly.", 1);
+        } catch (InterruptedException e) {
+            result.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while verifying password", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        long count = verified.sum();
+        out.put("threads", executor.getMaximumPoolSize());
+        out.put("active", executor.getActiveCount());
+        out.put("queueDepth", executor.getQueue().size());
+        out.put("queueCapacity", executor.getQueue().size() + executor.getQueue().remainingCapacity());
+        out.put("verified", count);
+        out.put("rejected", rejected.sum());
+        out.put("timedOut", timedOut.sum());
+        out.put("hashTimeAvgMillis", count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(hashNanosTotal.sum() / count));
+        out.put("hashTimeMaxMillis", TimeUnit.NANOSECONDS.toMillis(hashNanosMax.get()));
+        out.put("queueWaitAvgMillis", count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(waitNanosTotal.sum() / count));
+        out.put("queueWaitMaxMillis", TimeUnit.NANOSECONDS.toMillis(waitNanosMax.get()));
+        return out;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,63 @@
+package com.bfs.hibernateprojectdemo.security;
+
+import com.bfs.hibernateprojectdemo.domain.User;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Checks that a token's id and role claims still match the user row, so a deleted user or a role
+ * change takes effect within the TTL instead of at token expiry. Rows are cached per username, so
+ * almost every request is answered from memory. Disabled with security.jwt.claims-check.enabled=false.
+ */
+@Component
+public class UserClaimsCache {
+
+    private final boolean enabled;
+    private final SessionFactory sessionFactory;
+    private final LoadingCache<String, Optional<Claims>> current;
+
+    public UserClaimsCache(SessionFactory sessionFactory,
+                           @Value("${security.jwt.claims-check.enabled:true}") boolean enabled,
+                           @Value("${security.jwt.claims-check.ttl-seconds:60}") long ttlSeconds,
+                           @Value("${security.jwt.claims-check.max-users:10000}") long maxUsers) {
+        this.sessionFactory = sessionFactory;
+        this.enabled = enabled;
+        this.current = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build(this::load);
+    }
+
+    public boolean isCurrent(AuthenticatedUser principal) {
+        if (!enabled) return true;
+        Optional<Claims> claims = current.get(principal.getUsername());
+        return claims.isPresent()
+                && Objects.equals(claims.get().id, principal.getId())
+                && Objects.equals(claims.get().role, principal.getRole());
+    }
+
+    private Optional<Claims> load(String username) {
+        try (Session s = sessionFactory.openSession()) {
+            User u = s.bySimpleNaturalId(User.class).load(username);
+            return u == null ? Optional.empty() : Optional.of(new Claims(u.getId(), u.getRole()));
+        }
+    }
+
+    private static final class Claims {
+        final Long id;
+        final String role;
+
+        Claims(Long id, String role) {
+            this.id = id;
+            this.role = role;
+        }
+    }
+}
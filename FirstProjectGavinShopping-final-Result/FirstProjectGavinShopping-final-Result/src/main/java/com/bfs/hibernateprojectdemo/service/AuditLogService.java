@@ -1,35 +1,43 @@
 package com.bfs.hibernateprojectdemo.service;
 
 import com.bfs.hibernateprojectdemo.domain.AuditLog;
-import org.hibernate.Session;
-import org.hibernate.SessionFactory;
-import org.hibernate.Transaction;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 @Service
 public class AuditLogService {
-    private final SessionFactory sessionFactory;
+    private final AuditSink auditSink;
 
-    public AuditLogService(SessionFactory sessionFactory) {
-        this.sessionFactory = sessionFactory;
+    public AuditLogService(AuditSink auditSink) {
+        this.auditSink = auditSink;
     }
 
+    /** Stamps the entry now and hands it to the configured sink; the row is written asynchronously. */
     public void log(String resourceType, Long resourceId, Long userId, String changeSet,
                     Long previousVersion, Long newVersion) {
-        try (Session s = sessionFactory.openSession()) {
-            Transaction tx = s.beginTransaction();
-            AuditLog log = new AuditLog();
-            log.setResourceType(resourceType);
-            log.setResourceId(resourceId);
-            log.setUserId(userId);
-            log.setChangeSet(changeSet);
-            log.setTimestamp(LocalDateTime.now());
-            log.setPreviousVersion(previousVersion);
-            log.setNewVersion(newVersion);
-            s.save(log);
-            tx.commit();
-        }
+        AuditLog entry = new AuditLog();
+        entry.setResourceType(resourceType);
+        entry.setResourceId(resourceId);
+        entry.setUserId(userId);
+        entry.setChangeSet(changeSet);
+        entry.setTimestamp(LocalDateTime.now());
+        entry.setPreviousVersion(previousVersion);
+        entry.setNewVersion(newVersion);
+        auditSink.append(entry);
     }
-}
\ No newline at end of file
+
+    public List<AuditLog> findLocal(String resourceType, Long resourceId, LocalDateTime since) {
+        return auditSink.findLocal(resourceType, resourceId, since);
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("sink", auditSink.getClass().getSimpleName());
+        out.putAll(auditSink.snapshot());
+        return out;
+    }
+}
@@ -0,0 +1,27 @@
+package com.bfs.hibernateprojectdemo.service;
+
+import com.bfs.hibernateprojectdemo.domain.AuditLog;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Where AuditLogService hands stamped audit entries. Selected with audit.sink: "queue" batches them
+ * into audit_log from memory (QueuedAuditSink), "journal" appends them to local memory-mapped
+ * segments that are shipped to audit_log in the background (JournalAuditSink).
+ */
+public interface AuditSink {
+
+    /** Must not block on the database; called on the request thread after the change committed. */
+    void append(AuditLog entry);
+
+    /**
+     * Entries for one resource from {@code since} on (all if null) that are held locally and not yet
+     * written to audit_log, oldest first; empty if the sink keeps none. One written while this runs
+     * may be returned as well.
+     */
+    List<AuditLog> findLocal(String resourceType, Long resourceId, LocalDateTime since);
+
+    Map<String, Object> snapshot();
+}
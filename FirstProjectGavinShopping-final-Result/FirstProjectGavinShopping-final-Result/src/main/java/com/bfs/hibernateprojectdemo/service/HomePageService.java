@@ -15,7 +15,15 @@ import java.util.List;
 public class HomePageService {
     @Autowired
     private SessionFactory sessionFactory;
+    @Autowired
+    private ProductCatalogCache productCatalogCache;
+
+    // Served from the catalog cache; the returned list is shared and read-only
     public List<Product> getAvailableProducts(boolean isAdmin) {
+        return productCatalogCache.get(isAdmin, () -> loadProducts(isAdmin));
+    }
+
+    private List<Product> loadProducts(boolean isAdmin) {
         try (Session session = sessionFactory.openSession()) {
             String hql = isAdmin
                     ? "FROM Product" // admin sees all
@@ -35,7 +43,11 @@ public class HomePageService {
 
     public Order getOrderDetail(Long orderId) {
         try (Session session = sessionFactory.openSession()) {
-            return session.get(Order.class, orderId);
+            // Header and lines in one round trip
+            return session.createQuery(
+                            "select distinct o from Order o left join fetch o.lines where o.id = :id", Order.class)
+                    .setParameter("id", orderId)
+                    .uniqueResult();
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,167 @@
+package com.bfs.hibernateprojectdemo.service;
+
+import com.bfs.hibernateprojectdemo.domain.IdempotencyRecord;
+import com.bfs.hibernateprojectdemo.util.DuplicateKeys;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Dedupe store for Idempotency-Key requests.
+ *
+ * The idempotency_keys table is the source of truth: a request claims its key by inserting the row
+ * inside its own transaction, so a concurrent duplicate blocks on the primary key and then sees the
+ * committed outcome. Completed outcomes are also kept in a bounded in-memory map so a retry that hits
+ * the same instance is answered without opening a session.
+ */
+@Service
+public class IdempotencyService {
+
+    private static final String KEY_TABLE = "idempotency_keys";
+
+    private final SessionFactory sessionFactory;
+    private final long ttlMinutes;
+    private final int maxCachedEntries;
+
+    private final Map<String, IdempotencyRecord> recent = new ConcurrentHashMap<>();
+    private final Queue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+
+    public IdempotencyService(SessionFactory sessionFactory,
+                              @Value("${orders.idempotency.ttl-minutes:1440}") long ttlMinutes,
+                              @Value("${orders.idempotency.cache-size:10000}") int maxCachedEntries) {
+        this.sessionFactory = sessionFactory;
+        this.ttlMinutes = ttlMinutes;
+        this.maxCachedEntries = maxCachedEntries;
+    }
+
+    public String scope(String username, String idempotencyKey) {
+        return username + ":" + idempotencyKey;
+    }
+
+    /** Stable hash of the merged basket, used to reject a key reused for a different order. */
+    public String fingerprint(SortedMap<Long, Integer> lines) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(lines.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) hex.append(String.format("%02x", b));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** In-memory lookup only; null when the key is unknown here or expired. */
+    public IdempotencyRecord findCached(String scopedKey) {
+        IdempotencyRecord r = recent.get(scopedKey);
+        if (r == null) return null;
+        if (r.getExpiresAt().isBefore(LocalDateTime.now())) {
+            recent.remove(scopedKey);
+            return null;
+        }
+        return r;
+    }
+
+    /** In-memory lookup falling back to the table; completed records found in the table are cached. */
+    public IdempotencyRecord find(Session session, String scopedKey) {
+        IdempotencyRecord r = findCached(scopedKey);
+        if (r != null) return r;
+        r = session.get(IdempotencyRecord.class, scopedKey);
+        if (r == null || r.getExpiresAt().isBefore(LocalDateTime.now())) return null;
+        if (r.getResponseStatus() != 0) remember(r);
+        return r;
+    }
+
+    public IdempotencyRecord find(String scopedKey) {
+        try (Session s = sessionFactory.openSession()) {
+            return find(s, scopedKey);
+        }
+    }
+
+    /**
+     * Inserts the key row in the caller's transaction and flushes it so the primary key is taken now.
+     * Throws if another request already holds the key (see {@link #isDuplicateKey(Throwable)}).
+     */
+    public IdempotencyRecord claim(Session session, String scopedKey, String requestHash) {
+        LocalDateTime now = LocalDateTime.now();
+        // An expired row for the same key may still be waiting for the purge
+        session.createQuery("delete from IdempotencyRecord r where r.scopedKey = :k and r.expiresAt < :now")
+                .setParameter("k", scopedKey)
+                .setParameter("now", now)
+                .executeUpdate();
+        IdempotencyRecord r = new IdempotencyRecord();
+        r.setScopedKey(scopedKey);
+        r.setRequestHash(requestHash);
+        r.setCreatedAt(now);
+        r.setExpiresAt(now.plusMinutes(ttlMinutes));
+        session.save(r);
+        session.flush();
+        return r;
+    }
+
+    /** Records the response on a claimed key; written when the caller commits. */
+    public void complete(IdempotencyRecord r, int status, String body) {
+        r.setResponseStatus(status);
+        r.setResponseBody(body);
+    }
+
+    /** Publishes a committed record to the in-memory map, evicting the oldest entries past the bound. */
+    public void remember(IdempotencyRecord r) {
+        if (recent.put(r.getScopedKey(), r) == null) {
+            insertionOrder.add(r.getScopedKey());
+        }
+        while (recent.size() > maxCachedEntries) {
+            String oldest = insertionOrder.poll();
+            if (oldest == null) break;
+            recent.remove(oldest);
+        }
+    }
+
+    /**
+     * True only for a duplicate on the idempotency_keys primary key; FK, NOT NULL and other unique
+     * violations raised in the same transaction are real failures, not a lost race for the key.
+     */
+    public boolean isDuplicateKey(Throwable e) {
+        ConstraintViolationException cve = DuplicateKeys.find(e);
+        return cve != null && isKeyTable(cve);
+    }
+
+    private static boolean isKeyTable(ConstraintViolationException e) {
+        String constraint = e.getConstraintName() == null ? "" : e.getConstraintName().toLowerCase(Locale.ROOT);
+        String message = e.getSQLException().getMessage() == null ? "" : e.getSQLException().getMessage().toLowerCase(Locale.ROOT);
+        // MySQL 8.0.19+ names the key "idempotency_keys.PRIMARY"; H2 names the table in the message
+        if (constraint.startsWith(KEY_TABLE + ".") || message.contains(KEY_TABLE)) return true;
+        // Older MySQL says only "PRIMARY"; orders and order lines take generated ids, so the one
+        // client-chosen primary key inserted in an order transaction is the idempotency key
+        return constraint.equals("primary");
+    }
+
+    @Scheduled(fixedDelayString = "${orders.idempotency.purge-interval-ms:600000}")
+    public void purgeExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        recent.values().removeIf(r -> r.getExpiresAt().isBefore(now));
+        insertionOrder.removeIf(k -> !recent.containsKey(k));
+        try (Session s = sessionFactory.openSession()) {
+            Transaction tx = s.beginTransaction();
+            s.createQuery("delete from IdempotencyRecord r where r.expiresAt < :now")
+                    .setParameter("now", now)
+                    .executeUpdate();
+            tx.commit();
+        }
+    }
+}
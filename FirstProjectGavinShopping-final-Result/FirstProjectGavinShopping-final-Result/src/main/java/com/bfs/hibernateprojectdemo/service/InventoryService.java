@@ -0,0 +1,153 @@
+package com.bfs.hibernateprojectdemo.service;
+
+import com.bfs.hibernateprojectdemo.domain.Product;
+import org.hibernate.Cache;
+import org.hibernate.Session;
+import org.springframework.stereotype.Service;
+
+import javax.transaction.Synchronization;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Inventory reservation against the products table.
+ *
+ * Stock is decremented with a single guarded UPDATE instead of load/modify/update,
+ * so concurrent buyers of the same product never collide on the @Version column.
+ * Callers own the session and transaction; nothing here commits. Every change drops the
+ * product catalog cache once the caller's transaction commits. HQL updates evict the Product
+ * second-level cache on their own; the JDBC batch in reserveAll evicts it explicitly.
+ */
+@Service
+public class InventoryService {
+
+    private static final String GUARDED_DECREMENT_SQL =
+            "UPDATE products SET quantity = quantity - ?, version = version + 1 " +
+                    "WHERE productId = ? AND quantity >= ?";
+
+    private final ProductCatalogCache productCatalogCache;
+
+    public InventoryService(ProductCatalogCache productCatalogCache) {
+        this.productCatalogCache = productCatalogCache;
+    }
+
+    /**
+     * Atomically takes {@code quantity} units of a product.
+     *
+     * @return true if the row had enough stock and was decremented, false otherwise
+     */
+    public boolean reserve(Session session, Long productId, int quantity) {
+        int affected = session.createQuery(
+                        "update Product p set p.quantity = p.quantity - :qty, p.version = p.version + 1 " +
+                                "where p.productId = :pid and p.quantity >= :qty")
+                .setParameter("qty", quantity)
+                .setParameter("pid", productId)
+                .executeUpdate();
+        if (affected == 1) productCatalogCache.invalidateOnCommit(session);
+        return affected == 1;
+    }
+
+    /**
+     * Reserves every line of a basket in one JDBC batch.
+     *
+     * Lines must already be merged per product and sorted by product id: every transaction
+     * then takes row locks in the same order, which rules out lock-order deadlocks between
+     * baskets that share products.
+     *
+     * @return ids of the products that did not have enough stock; empty when all lines were reserved
+     */
+    public List<Long> reserveAll(Session session, SortedMap<Long, Integer> lines) {
+        if (lines.isEmpty()) return Collections.emptyList();
+        List<Long> ids = new ArrayList<>(lines.keySet());
+        List<Long> failed = new ArrayList<>();
+        session.doWork(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(GUARDED_DECREMENT_SQL)) {
+                for (Map.Entry<Long, Integer> line : lines.entrySet()) {
+                    ps.setInt(1, line.getValue());
+                    ps.setLong(2, line.getKey());
+                    ps.setInt(3, line.getValue());
+                    ps.addBatch();
+                }
+                int[] counts = ps.executeBatch();
+                // Anything but exactly one row (including SUCCESS_NO_INFO) is treated as not reserved
+                for (int i = 0; i < counts.length; i++) {
+                    if (counts[i] != 1) failed.add(ids.get(i));
+                }
+            }
+        });
+        if (failed.size() < ids.size()) {
+            ids.removeAll(failed);
+            evictSecondLevel(session, ids);
+            productCatalogCache.invalidateOnCommit(session);
+        }
+        return failed;
+    }
+
+    // Hibernate does not see JDBC writes; evict now so this transaction reads the new rows, and
+    // again after commit in case another session cached the old rows in between
+    private static void evictSecondLevel(Session session, List<Long> productIds) {
+        Cache cache = session.getSessionFactory().getCache();
+        Runnable evict = () -> {
+            for (Long id : productIds) cache.evictEntityData(Product.class, id);
+            cache.evictQueryRegion(Product.QUERY_REGION);
+        };
+        evict.run();
+        session.getTransaction().registerSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                evict.run();
+            }
+        });
+    }
+
+    /**
+     * Atomically returns {@code quantity} units to a product, e.g. when an order is canceled.
+     *
+     * @return false if the product row no longer exists
+     */
+    public boolean restock(Session session, Long productId, int quantity) {
+        int affected = session.createQuery(
+                        "update Product p set p.quantity = p.quantity + :qty, p.version = p.version + 1 " +
+                                "where p.productId = :pid")
+                .setParameter("qty", quantity)
+                .setParameter("pid", productId)
+                .executeUpdate();
+        if (affected == 1) productCatalogCache.invalidateOnCommit(session);
+        return affected == 1;
+    }
+
+    /**
+     * Re-inserts a product that was removed when its stock ran out, e.g. when an order is canceled.
+     */
+    public void recreate(Session session, Product product) {
+        session.save(product);
+        productCatalogCache.invalidateOnCommit(session);
+    }
+
+    /**
+     * Removes the product once its stock reaches zero (inventory rule shared with PATCH/POST).
+     */
+    public void removeIfDepleted(Session session, Long productId) {
+        removeDepleted(session, Collections.singletonList(productId));
+    }
+
+    /**
+     * Removes every product in {@code productIds} whose stock reached zero, in one statement.
+     */
+    public void removeDepleted(Session session, Collection<Long> productIds) {
+        if (productIds.isEmpty()) return;
+        int removed = session.createQuery("delete from Product p where p.productId in :pids and p.quantity <= 0")
+                .setParameterList("pids", productIds)
+                .executeUpdate();
+        if (removed > 0) productCatalogCache.invalidateOnCommit(session);
+    }
+}
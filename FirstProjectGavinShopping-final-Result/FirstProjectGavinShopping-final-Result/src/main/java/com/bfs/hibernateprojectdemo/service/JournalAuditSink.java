@@ -0,0 +1,555 @@
+package com.bfs.hibernateprojectdemo.service;
+
+import com.bfs.hibernateprojectdemo.domain.AuditJournalCheckpoint;
+import com.bfs.hibernateprojectdemo.domain.AuditLog;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+/**
+ * Audit sink backed by an append-only journal (audit.sink=journal). append() encodes the entry into
+ * the active memory-mapped segment under a short lock, so the request path is a memory copy. Segments
+ * are preallocated to audit.journal.segment-bytes and named after the sequence number of their first
+ * record; a full segment is sealed and a new one started.
+ *
+ * Record layout: int length, int CRC32 of the body, then the body: seq, timestamp (epoch nanos),
+ * resourceId, userId, previousVersion, newVersion (longs, Long.MIN_VALUE for null), the resource type
+ * (short length + UTF-8) and the change set (int length, -1 for null, + UTF-8). A zero length marks
+ * the end of the data; on startup each segment is scanned up to the first missing or torn record.
+ *
+ * Each segment keeps a sparse index in memory, rebuilt by that scan: the offset of every
+ * audit.journal.index-interval'th record with its sequence number and the highest timestamp seen so
+ * far, and the offset of the first record of each (resourceType, resourceId). The shipper seeks by
+ * sequence number; findLocal seeks by resource and timestamp.
+ *
+ * A background shipper copies records into audit_log in batches and advances the
+ * audit_journal_checkpoint row in the same transaction, so every record is inserted exactly once.
+ * Fully shipped segments are deleted. Segments are forced to disk every audit.journal.force-interval-ms;
+ * until then a record survives a process crash but not an OS crash.
+ */
+@Component
+@ConditionalOnProperty(name = "audit.sink", havingValue = "journal")
+public class JournalAuditSink implements AuditSink {
+
+    private static final Logger log = LoggerFactory.getLogger(JournalAuditSink.class);
+
+    private static final int HEADER_BYTES = 8;
+    // seq, timestamp, resourceId, userId, previousVersion, newVersion, type length, change set length
+    private static final int FIXED_BODY_BYTES = 6 * 8 + 2 + 4;
+    private static final long NULL_LONG = Long.MIN_VALUE;
+    private static final String SUFFIX = ".seg";
+
+    private final SessionFactory sessionFactory;
+    private final Path dir;
+    private final String journalName;
+    private final int segmentBytes;
+    private final int indexInterval;
+    private final int shipBatchSize;
+    private final long shipIntervalNanos;
+    private final long forceIntervalNanos;
+    private final long retryBackoffNanos;
+
+    // By base sequence number; the last one is active
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final CRC32 crc = new CRC32();
+    private Segment active;
+    private long nextSeq;
+
+    private final Thread shipper;
+    private volatile boolean running = true;
+    private volatile long shippedSeq;
+    private long lastForceNanos = System.nanoTime();
+
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder shipped = new LongAdder();
+    private final LongAdder shipBatches = new LongAdder();
+    private final LongAdder shipFailures = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder segmentsDeleted = new LongAdder();
+
+    public JournalAuditSink(SessionFactory sessionFactory,
+                            @Value("${audit.journal.dir:audit-journal}") String dir,
+                            @Value("${audit.journal.segment-bytes:67108864}") int segmentBytes,
+                            @Value("${audit.journal.index-interval:64}") int indexInterval,
+                            @Value("${audit.journal.ship-batch-size:200}") int shipBatchSize,
+                            @Value("${audit.journal.ship-interval-ms:200}") long shipIntervalMillis,
+                            @Value("${audit.journal.force-interval-ms:1000}") long forceIntervalMillis,
+                            @Value("${audit.journal.retry-backoff-ms:5000}") long retryBackoffMillis) {
+        this.sessionFactory = sessionFactory;
+        this.dir = Paths.get(dir).toAbsolutePath().normalize();
+        this.journalName = dir;
+        this.segmentBytes = segmentBytes;
+        this.indexInterval = indexInterval;
+        this.shipBatchSize = shipBatchSize;
+        this.shipIntervalNanos = TimeUnit.MILLISECONDS.toNanos(shipIntervalMillis);
+        this.forceIntervalNanos = TimeUnit.MILLISECONDS.toNanos(forceIntervalMillis);
+        this.retryBackoffNanos = TimeUnit.MILLISECONDS.toNanos(retryBackoffMillis);
+        this.shipper = new Thread(this::runShipper, "audit-shipper");
+        this.shipper.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        open();
+        shipper.start();
+    }
+
+    // Recovers the segments on disk and resumes after the checkpoint; start() then runs the shipper
+    void open() throws IOException {
+        Files.createDirectories(dir);
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            for (Path p : stream) files.add(p);
+        }
+        for (Path p : files) {
+            String name = p.getFileName().toString();
+            long base = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+            segments.put(base, recover(p, base));
+        }
+
+        long checkpoint = readCheckpoint();
+        if (!segments.isEmpty()) {
+            Segment last = segments.lastEntry().getValue();
+            nextSeq = last.lastSeq < 0 ? last.baseSeq : last.lastSeq + 1;
+            for (Segment s : segments.values()) s.sealed = s != last;
+            active = last;
+        }
+        // New records must not reuse sequence numbers the checkpoint already covers
+        if (active == null || checkpoint > nextSeq) {
+            if (active != null) active.sealed = true;
+            nextSeq = Math.max(nextSeq, checkpoint);
+            active = createSegment(nextSeq);
+        }
+        Segment oldest = segments.firstEntry().getValue();
+        // A checkpoint older than the oldest segment means records were lost; ship what is left
+        shippedSeq = Math.max(checkpoint, oldest.baseSeq);
+        if (checkpoint < oldest.baseSeq) {
+            log.warn("Audit journal {} starts at record {} but only {} were shipped", dir, oldest.baseSeq, checkpoint);
+        }
+        log.info("Audit journal {}: {} segments, next record {}, shipping from {}",
+                dir, segments.size(), nextSeq, shippedSeq);
+    }
+
+    @Override
+    public void append(AuditLog entry) {
+        byte[] type = entry.getResourceType().getBytes(StandardCharsets.UTF_8);
+        byte[] changeSet = entry.getChangeSet() == null ? null : entry.getChangeSet().getBytes(StandardCharsets.UTF_8);
+        int bodyBytes = FIXED_BODY_BYTES + type.length + (changeSet == null ? 0 : changeSet.length);
+        int recordBytes = HEADER_BYTES + bodyBytes;
+        // Room for the record and the terminating zero length, even in an empty segment
+        if (recordBytes + 4 > segmentBytes || type.length > Short.MAX_VALUE) {
+            rejected.increment();
+            log.warn("Audit entry for {} {} is too large for the journal ({} bytes)",
+                    entry.getResourceType(), entry.getResourceId(), recordBytes);
+            return;
+        }
+        synchronized (this) {
+            if (active.end + recordBytes + 4 > active.buf.capacity()) roll();
+            Segment seg = active;
+            MappedByteBuffer buf = seg.buf;
+            int pos = seg.end;
+            int body = pos + HEADER_BYTES;
+            long seq = nextSeq;
+            long ts = encodeTime(entry.getTimestamp());
+            buf.putLong(body, seq);
+            buf.putLong(body + 8, ts);
+            buf.putLong(body + 16, entry.getResourceId());
+            buf.putLong(body + 24, orNull(entry.getUserId()));
+            buf.putLong(body + 32, orNull(entry.getPreviousVersion()));
+            buf.putLong(body + 40, orNull(entry.getNewVersion()));
+            buf.putShort(body + 48, (short) type.length);
+            buf.put(body + 50, type);
+            int cs = body + 50 + type.length;
+            buf.putInt(cs, changeSet == null ? -1 : changeSet.length);
+            if (changeSet != null) buf.put(cs + 4, changeSet);
+            crc.reset();
+            crc.update(buf.slice(body, bodyBytes));
+            buf.putInt(pos + 4, (int) crc.getValue());
+            // Length last: a record without it reads as the end of the data
+            buf.putInt(pos, bodyBytes);
+            buf.putInt(pos + recordBytes, 0);
+            seg.index(seq, ts, entry.getResourceType(), entry.getResourceId(), pos, indexInterval);
+            seg.lastSeq = seq;
+            nextSeq = seq + 1;
+            // Publishes the record to readers
+            seg.end = pos + recordBytes;
+        }
+        appended.increment();
+    }
+
+    private void roll() {
+        active.buf.force();
+        active.sealed = true;
+        active = createSegment(nextSeq);
+    }
+
+    private Segment createSegment(long baseSeq) {
+        Path path = dir.resolve(String.format("%020d%s", baseSeq, SUFFIX));
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            Segment seg = new Segment(path, baseSeq, ch.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes));
+            segments.put(baseSeq, seg);
+            return seg;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create audit journal segment " + path, e);
+        }
+    }
+
+    // Maps an existing segment and rebuilds its index up to the first missing or torn record
+    private Segment recover(Path path, long baseSeq) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            Segment seg = new Segment(path, baseSeq, ch.map(FileChannel.MapMode.READ_WRITE, 0, ch.size()));
+            int pos = 0;
+            long expected = baseSeq;
+            while (true) {
+                Record r = read(seg.buf, pos, seg.buf.capacity());
+                if (r == null || r.seq != expected) break;
+                seg.index(r.seq, r.timestampNanos, r.resourceType, r.resourceId, pos, indexInterval);
+                seg.lastSeq = r.seq;
+                expected++;
+                pos = r.next;
+            }
+            seg.end = pos;
+            return seg;
+        }
+    }
+
+    private long readCheckpoint() {
+        try (Session s = sessionFactory.openSession()) {
+            AuditJournalCheckpoint cp = s.get(AuditJournalCheckpoint.class, journalName);
+            return cp == null ? 0 : cp.getNextSeq();
+        }
+    }
+
+    private void runShipper() {
+        long lastFailure = 0;
+        while (running) {
+            boolean more = false;
+            if (lastFailure == 0 || System.nanoTime() - lastFailure >= retryBackoffNanos) {
+                int n = shipOnce();
+                if (n > 0) {
+                    lastFailure = 0;
+                    more = n == shipBatchSize;
+                } else if (n < 0) {
+                    lastFailure = System.nanoTime();
+                }
+            }
+            forceIfDue();
+            if (!more) LockSupport.parkNanos(shipIntervalNanos);
+        }
+    }
+
+    // Ships the next batch and deletes the segments it finished; returns its size, or -1 if it failed
+    int shipOnce() {
+        List<AuditLog> batch = new ArrayList<>(shipBatchSize);
+        long upTo = readFrom(shippedSeq, batch);
+        if (batch.isEmpty()) return 0;
+        if (!ship(batch, upTo)) return -1;
+        deleteShippedSegments();
+        return batch.size();
+    }
+
+    /** Collects up to shipBatchSize consecutive records from {@code seq} on; returns the sequence after the last one. */
+    private long readFrom(long seq, List<AuditLog> out) {
+        Map.Entry<Long, Segment> e = segments.floorEntry(seq);
+        if (e == null) e = segments.firstEntry();
+        while (e != null && out.size() < shipBatchSize) {
+            Segment seg = e.getValue();
+            // Records below a segment's base were lost before it was started (see start())
+            seq = Math.max(seq, seg.baseSeq);
+            int pos;
+            synchronized (this) {
+                pos = seg.offsetForSeq(seq);
+            }
+            // sealed before end: once sealed, end is final, so nothing appended after the read is skipped
+            boolean sealed = seg.sealed;
+            int end = seg.end;
+            while (pos < end && out.size() < shipBatchSize) {
+                Record r = read(seg.buf, pos, end);
+                if (r == null || r.seq > seq) break;
+                if (r.seq == seq) {
+                    out.add(r.toAuditLog());
+                    seq++;
+                }
+                pos = r.next;
+            }
+            if (pos < end || !sealed) break;
+            e = segments.higherEntry(e.getKey());
+        }
+        return seq;
+    }
+
+    private boolean ship(List<AuditLog> batch, long nextSeq) {
+        try (Session s = sessionFactory.openSession()) {
+            Transaction tx = s.beginTransaction();
+            try {
+                for (AuditLog entry : batch) s.persist(entry);
+                AuditJournalCheckpoint cp = s.get(AuditJournalCheckpoint.class, journalName);
+                if (cp == null) {
+                    cp = new AuditJournalCheckpoint();
+                    cp.setJournal(journalName);
+                    cp.setNextSeq(nextSeq);
+                    s.persist(cp);
+                } else {
+                    cp.setNextSeq(nextSeq);
+                }
+                tx.commit();
+            } catch (RuntimeException ex) {
+                if (tx.isActive()) tx.rollback();
+                throw ex;
+            }
+            shippedSeq = nextSeq;
+            shipped.add(batch.size());
+            shipBatches.increment();
+            return true;
+        } catch (RuntimeException ex) {
+            shipFailures.increment();
+            log.warn("Could not ship {} audit records, will retry", batch.size(), ex);
+            return false;
+        }
+    }
+
+    private void deleteShippedSegments() {
+        for (Segment seg : segments.values()) {
+            if (!seg.sealed || seg.lastSeq >= shippedSeq) break;
+            segments.remove(seg.baseSeq);
+            try {
+                Files.deleteIfExists(seg.path);
+                segmentsDeleted.increment();
+            } catch (IOException ex) {
+                log.warn("Could not delete shipped audit segment {}", seg.path, ex);
+            }
+        }
+    }
+
+    private void forceIfDue() {
+        long now = System.nanoTime();
+        if (now - lastForceNanos < forceIntervalNanos) return;
+        lastForceNanos = now;
+        Segment seg = active;
+        seg.buf.force();
+    }
+
+    @Override
+    public List<AuditLog> findLocal(String resourceType, Long resourceId, LocalDateTime since) {
+        String key = Segment.key(resourceType, resourceId);
+        long fromTs = since == null ? Long.MIN_VALUE : encodeTime(since);
+        // Shipped records are in audit_log already, even if their segment is still here
+        long unshipped = shippedSeq;
+        List<AuditLog> out = new ArrayList<>();
+        for (Segment seg : segments.values()) {
+            if (seg.lastSeq < unshipped) continue;
+            int pos;
+            synchronized (this) {
+                Integer first = seg.firstOffset.get(key);
+                if (first == null || seg.maxTimestamp < fromTs) continue;
+                pos = Math.max(first, seg.offsetBeforeTime(fromTs));
+            }
+            int end = seg.end;
+            while (pos < end) {
+                Record r = read(seg.buf, pos, end);
+                if (r == null) break;
+                if (r.seq >= unshipped && r.timestampNanos >= fromTs
+                        && r.resourceId == resourceId && r.resourceType.equals(resourceType)) {
+                    out.add(r.toAuditLog());
+                }
+                pos = r.next;
+            }
+        }
+        return out;
+    }
+
+    @Override
+    public Map<String, Object> snapshot() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        long next;
+        synchronized (this) {
+            next = nextSeq;
+        }
+        out.put("dir", dir.toString());
+        out.put("segments", segments.size());
+        out.put("nextSeq", next);
+        out.put("shippedSeq", shippedSeq);
+        out.put("shipLag", next - shippedSeq);
+        out.put("appended", appended.sum());
+        out.put("shipped", shipped.sum());
+        out.put("shipBatches", shipBatches.sum());
+        out.put("shipFailures", shipFailures.sum());
+        out.put("rejected", rejected.sum());
+        out.put("segmentsDeleted", segmentsDeleted.sum());
+        return out;
+    }
+
+    // Ships what it can within the timeout and forces the active segment; the rest ships on restart
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(shipper);
+        shipper.join(TimeUnit.NANOSECONDS.toMillis(shipIntervalNanos) + 5000);
+        while (!shipper.isAlive()) {
+            if (shipOnce() <= 0) break;
+        }
+        synchronized (this) {
+            active.buf.force();
+        }
+    }
+
+    private static long orNull(Long v) {
+        return v == null ? NULL_LONG : v;
+    }
+
+    private static Long toLong(long v) {
+        return v == NULL_LONG ? null : v;
+    }
+
+    // LocalDateTime carries no zone; UTC is only the encoding and decodes back to the same value
+    private static long encodeTime(LocalDateTime t) {
+        return TimeUnit.SECONDS.toNanos(t.toEpochSecond(ZoneOffset.UTC)) + t.getNano();
+    }
+
+    private static LocalDateTime decodeTime(long nanos) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(nanos, 1_000_000_000L),
+                (int) Math.floorMod(nanos, 1_000_000_000L), ZoneOffset.UTC);
+    }
+
+    // null at the end of the data, or where a record is incomplete or fails its checksum
+    private static Record read(MappedByteBuffer buf, int pos, int limit) {
+        if (pos + HEADER_BYTES > limit) return null;
+        int bodyBytes = buf.getInt(pos);
+        if (bodyBytes < FIXED_BODY_BYTES || pos + HEADER_BYTES + bodyBytes > limit) return null;
+        int body = pos + HEADER_BYTES;
+        CRC32 check = new CRC32();
+        check.update(buf.slice(body, bodyBytes));
+        if ((int) check.getValue() != buf.getInt(pos + 4)) return null;
+        Record r = new Record();
+        r.seq = buf.getLong(body);
+        r.timestampNanos = buf.getLong(body + 8);
+        r.resourceId = buf.getLong(body + 16);
+        r.userId = buf.getLong(body + 24);
+        r.previousVersion = buf.getLong(body + 32);
+        r.newVersion = buf.getLong(body + 40);
+        byte[] type = new byte[buf.getShort(body + 48)];
+        buf.get(body + 50, type);
+        r.resourceType = new String(type, StandardCharsets.UTF_8);
+        int cs = body + 50 + type.length;
+        int changeSetBytes = buf.getInt(cs);
+        if (changeSetBytes >= 0) {
+            byte[] changeSet = new byte[changeSetBytes];
+            buf.get(cs + 4, changeSet);
+            r.changeSet = new String(changeSet, StandardCharsets.UTF_8);
+        }
+        r.next = body + bodyBytes;
+        return r;
+    }
+
+    private static final class Record {
+        long seq;
+        long timestampNanos;
+        long resourceId;
+        long userId;
+        long previousVersion;
+        long newVersion;
+        String resourceType;
+        String changeSet;
+        int next;
+
+        AuditLog toAuditLog() {
+            AuditLog entry = new AuditLog();
+            entry.setResourceType(resourceType);
+            entry.setResourceId(resourceId);
+            entry.setUserId(toLong(userId));
+            entry.setChangeSet(changeSet);
+            entry.setTimestamp(decodeTime(timestampNanos));
+            entry.setPreviousVersion(toLong(previousVersion));
+            entry.setNewVersion(toLong(newVersion));
+            return entry;
+        }
+    }
+
+    private static final class Segment {
+        final Path path;
+        final long baseSeq;
+        final MappedByteBuffer buf;
+        // Written only by the appender; end is published after each record
+        volatile int end;
+        volatile boolean sealed;
+        volatile long lastSeq = -1;
+
+        // Sparse index, guarded by the sink's lock: every n-th record's offset, seq and running max timestamp
+        final List<long[]> samples = new ArrayList<>();
+        final Map<String, Integer> firstOffset = new HashMap<>();
+        long maxTimestamp = Long.MIN_VALUE;
+        int count;
+
+        Segment(Path path, long baseSeq, MappedByteBuffer buf) {
+            this.path = path;
+            this.baseSeq = baseSeq;
+            this.buf = buf;
+        }
+
+        static String key(String resourceType, long resourceId) {
+            return resourceType + ':' + resourceId;
+        }
+
+        void index(long seq, long ts, String resourceType, long resourceId, int offset, int interval) {
+            maxTimestamp = Math.max(maxTimestamp, ts);
+            if (count++ % interval == 0) samples.add(new long[]{seq, maxTimestamp, offset});
+            firstOffset.putIfAbsent(key(resourceType, resourceId), offset);
+        }
+
+        // Offset of the last sampled record at or before seq
+        int offsetForSeq(long seq) {
+            return offsetOfLastSampleBelow(0, seq + 1);
+        }
+
+        // Offset of the last sample before which every record is older than ts
+        int offsetBeforeTime(long ts) {
+            return offsetOfLastSampleBelow(1, ts);
+        }
+
+        // Both sampled columns are non-decreasing, so binary search for the last value < limit
+        private int offsetOfLastSampleBelow(int column, long limit) {
+            int lo = 0, hi = samples.size() - 1, found = -1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (samples.get(mid)[column] < limit) {
+                    found = mid;
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return found < 0 ? 0 : (int) samples.get(found)[2];
+        }
+    }
+}
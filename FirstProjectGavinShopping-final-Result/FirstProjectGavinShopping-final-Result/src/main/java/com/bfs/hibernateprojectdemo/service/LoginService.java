@@ -1,29 +1,36 @@
 package com.bfs.hibernateprojectdemo.service;
 
 import com.bfs.hibernateprojectdemo.domain.User;
+import com.bfs.hibernateprojectdemo.security.AuthenticatedUser;
+import com.bfs.hibernateprojectdemo.security.PasswordVerifier;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
-import org.hibernate.query.Query;
 
 
 @Service
 public class LoginService {
-    @Autowired
-    private SessionFactory sessionFactory;
-    @Autowired
-    private PasswordEncoder passwordEncoder;
+    private final SessionFactory sessionFactory;
+    // BCrypt runs on its own bounded pool, not the request thread
+    private final PasswordVerifier passwordVerifier;
 
-    public boolean authenticate(String userName, String rawPassword) {
+    public LoginService(SessionFactory sessionFactory, PasswordVerifier passwordVerifier) {
+        this.sessionFactory = sessionFactory;
+        this.passwordVerifier = passwordVerifier;
+    }
+
+    /**
+     * Loads the user once and checks the password against it.
+     *
+     * @return the principal to mint a token for (without the password hash), or null if the
+     *         username is unknown or the password is wrong
+     */
+    public AuthenticatedUser authenticate(String userName, String rawPassword) {
+        User dbUser;
         try (Session session = sessionFactory.openSession()) {
-            Query<User> query = session.createQuery(
-                    "from User u where u.username = :userName",
-                    User.class);
-            query.setParameter("userName", userName);
-            User dbUser = query.uniqueResult();
-            return dbUser != null && passwordEncoder.matches(rawPassword, dbUser.getPassword());
+            dbUser = session.bySimpleNaturalId(User.class).load(userName);
         }
+        if (dbUser == null || !passwordVerifier.matches(rawPassword, dbUser.getPassword())) return null;
+        return new AuthenticatedUser(dbUser.getId(), dbUser.getUsername(), null, dbUser.getRole());
     }
-}
\ No newline at end of file
+}
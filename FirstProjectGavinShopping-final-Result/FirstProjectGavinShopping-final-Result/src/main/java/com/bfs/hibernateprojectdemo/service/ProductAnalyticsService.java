@@ -1,94 +1,167 @@
 package com.bfs.hibernateprojectdemo.service;
 
-import com.bfs.hibernateprojectdemo.domain.Product;
+import com.bfs.hibernateprojectdemo.domain.ProductSalesBucket;
+import com.bfs.hibernateprojectdemo.dto.ApproxRanking;
+import com.bfs.hibernateprojectdemo.dto.ProductRankDto;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.query.Query;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Service
 public class ProductAnalyticsService {
 
+    // e.g. 24h, 7d, 30d
+    private static final Pattern WINDOW = Pattern.compile("(\\d{1,4})([hd])");
+
     @Autowired
     private SessionFactory sessionFactory;
+    @Autowired
+    private ProductLeaderboards leaderboards;
+    @Autowired
+    private ProductHeavyHitters heavyHitters;
+    @Value("${analytics.buckets.hourly-retention-days:8}")
+    private int hourlyRetentionDays;
+    @Value("${analytics.buckets.daily-retention-days:400}")
+    private int dailyRetentionDays;
 
-    // Top-N most frequently ordered product IDs (all statuses, global)
-    public List<Long> getTopFrequent(int n) {
-        try (Session session = sessionFactory.openSession()) {
-            Query<Long> idQuery = session.createQuery(
-                    "SELECT o.productId FROM Order o " +
-                    "GROUP BY o.productId " +
-                    "ORDER BY COUNT(o.productId) DESC, o.productId ASC", Long.class);
-            idQuery.setMaxResults(n);
-            List<Long> productIds = idQuery.list();
-            return productIds != null ? productIds : new java.util.ArrayList<>();
-        }
+    // Rankings come from the in-memory leaderboards once built; until then each is a single
+    // ranked projection over the product_sales_stats rollup (completed orders only).
+    // Products deleted since (sold out) keep their rank under their last sold name.
+    // A window (e.g. "24h", "7d") ranks over the product_sales_buckets in range instead;
+    // a null window means all time.
+
+    // Top-N most frequently ordered products (completed orders, global)
+    public List<ProductRankDto> getTopFrequent(int n) {
+        return getTopFrequent(n, null);
     }
 
-    // Top-N most recent product IDs by latest order time (all statuses, global)
-    public List<Long> getTopRecent(int n) {
-        try (Session session = sessionFactory.openSession()) {
-            Query<Long> idQuery = session.createQuery(
-                    "SELECT o.productId FROM Order o " +
-                    "GROUP BY o.productId " +
-                    "ORDER BY MAX(o.orderTime) DESC, o.productId ASC", Long.class);
-            idQuery.setMaxResults(n);
-            List<Long> productIds = idQuery.list();
-            return productIds != null ? productIds : new java.util.ArrayList<>();
-        }
+    public List<ProductRankDto> getTopFrequent(int n, String window) {
+        return top(ProductLeaderboards.Ranking.FREQUENT, "s.orderCount DESC", "sum(b.orderCount) DESC", n, window);
+    }
+
+    // Approximate top-N by order count from bounded-memory sketches, with an error bound
+    public ApproxRanking getApproxTopFrequent(int n) {
+        return heavyHitters.top(ProductHeavyHitters.Metric.FREQUENT, n);
+    }
+
+    // Top-N most recent products by latest order time (completed orders, global)
+    public List<ProductRankDto> getTopRecent(int n) {
+        return getTopRecent(n, null);
+    }
+
+    public List<ProductRankDto> getTopRecent(int n, String window) {
+        return top(ProductLeaderboards.Ranking.RECENT, "s.lastOrderTime DESC", "max(b.lastOrderTime) DESC", n, window);
+    }
+
+    // Top-N most profitable by realized profit on completed orders
+    // Profit = sum of (retailPrice - wholesalePrice) * quantity at purchase time
+    public List<ProductRankDto> getTopProfit(int n) {
+        return getTopProfit(n, null);
+    }
+
+    public List<ProductRankDto> getTopProfit(int n, String window) {
+        return top(ProductLeaderboards.Ranking.PROFIT, "s.profit DESC", "sum(b.profit) DESC", n, window);
+    }
+
+    // Top-N by units ordered (completed orders, global)
+    public List<ProductRankDto> getTopPopular(int n) {
+        return getTopPopular(n, null);
+    }
+
+    public List<ProductRankDto> getTopPopular(int n, String window) {
+        return top(ProductLeaderboards.Ranking.POPULAR, "s.units DESC", "sum(b.units) DESC", n, window);
     }
 
-    // Top-N most profitable based purely on current product table
-    // Profit = (retailPrice - wholesalePrice) * quantity
-    public List<Product> getTopProfit(int n) {
+    // Approximate top-N by units from bounded-memory sketches, with an error bound
+    public ApproxRanking getApproxTopPopular(int n) {
+        return heavyHitters.top(ProductHeavyHitters.Metric.POPULAR, n);
+    }
+
+    private List<ProductRankDto> top(ProductLeaderboards.Ranking ranking, String orderBy, String windowOrderBy,
+                                     int n, String window) {
+        if (window != null) return topInWindow(windowOrderBy, n, window);
+        if (leaderboards.isReady()) return leaderboards.top(ranking, n);
         try (Session session = sessionFactory.openSession()) {
-            Query<Product> q = session.createQuery("FROM Product", Product.class);
-            List<Product> all = q.list();
-            if (all == null || all.isEmpty()) return new java.util.ArrayList<>();
-            all.sort((a, b) -> {
-                double pa = (a.getRetailPrice() - a.getWholesalePrice()) * a.getQuantity();
-                double pb = (b.getRetailPrice() - b.getWholesalePrice()) * b.getQuantity();
-                int cmp = Double.compare(pb, pa);
-                if (cmp != 0) return cmp;
-                return Long.compare(a.getProductId(), b.getProductId());
-            });
-            if (n < all.size()) {
-                return all.subList(0, n);
-            }
-            return all;
-        } catch (Exception e) {
-            e.printStackTrace();
-            return new java.util.ArrayList<>();
+            Query<ProductRankDto> q = session.createQuery(
+                    "SELECT new com.bfs.hibernateprojectdemo.dto.ProductRankDto(" +
+                    "s.productId, s.productName, s.orderCount, s.units, s.profit, s.lastOrderTime) " +
+                    "FROM ProductSalesStats s " +
+                    "ORDER BY " + orderBy + ", s.productId ASC", ProductRankDto.class);
+            q.setMaxResults(n);
+            List<ProductRankDto> ranked = q.list();
+            return ranked != null ? ranked : new java.util.ArrayList<>();
         }
     }
 
-    // Top-N by units ordered (all statuses, global)
-    public List<Product> getTopPopular(int n) {
+    // Windows up to the hourly retention merge at most that many hourly buckets per product;
+    // longer ones use daily buckets. Either way the window ends with the current (partial) bucket.
+    private List<ProductRankDto> topInWindow(String orderBy, int n, String window) {
+        Matcher m = WINDOW.matcher(window);
+        if (!m.matches()) {
+            throw new IllegalArgumentException("window must look like 24h or 30d");
+        }
+        int amount = Integer.parseInt(m.group(1));
+        if (amount <= 0) {
+            throw new IllegalArgumentException("window must be positive");
+        }
+        long hours = "h".equals(m.group(2)) ? amount : amount * 24L;
+        LocalDateTime now = LocalDateTime.now();
+        String granularity;
+        LocalDateTime from;
+        if (hours <= hourlyRetentionDays * 24L) {
+            granularity = ProductSalesBucket.HOURLY;
+            from = now.truncatedTo(ChronoUnit.HOURS).minusHours(hours - 1);
+        } else {
+            long days = (hours + 23) / 24;
+            if (days > dailyRetentionDays) {
+                throw new IllegalArgumentException("window must be at most " + dailyRetentionDays + "d");
+            }
+            granularity = ProductSalesBucket.DAILY;
+            from = now.truncatedTo(ChronoUnit.DAYS).minusDays(days - 1);
+        }
         try (Session session = sessionFactory.openSession()) {
-            // Get product IDs ordered by total quantity
-            Query<Long> idQuery = session.createQuery(
-                    "SELECT o.productId FROM Order o " +
-                    "GROUP BY o.productId " +
-                    "ORDER BY SUM(o.quantity) DESC, o.productId ASC", Long.class);
-            idQuery.setMaxResults(n);
-            List<Long> productIds = idQuery.list();
-            
-            if (productIds == null || productIds.isEmpty()) {
-                return new java.util.ArrayList<>();
+            Query<ProductRankDto> q = session.createQuery(
+                    "SELECT new com.bfs.hibernateprojectdemo.dto.ProductRankDto(" +
+                    "b.productId, sum(b.orderCount), sum(b.units), sum(b.profit), " +
+                    "max(b.lastOrderTime)) " +
+                    "FROM ProductSalesBucket b " +
+                    "WHERE b.granularity = :g AND b.bucketStart >= :from " +
+                    "GROUP BY b.productId " +
+                    "ORDER BY " + orderBy + ", b.productId ASC", ProductRankDto.class);
+            q.setParameter("g", granularity);
+            q.setParameter("from", from);
+            q.setMaxResults(n);
+            List<ProductRankDto> ranked = q.list();
+            if (ranked.isEmpty()) return ranked;
+
+            // Name each product as of its most recent bucket in the window, i.e. the name it last sold
+            // under (as the all-time ranking does); max(productName) would pick the alphabetically last
+            Map<Long, ProductRankDto> byId = new HashMap<>();
+            for (ProductRankDto dto : ranked) byId.put(dto.getProductId(), dto);
+            for (Object[] row : session.createQuery(
+                            "SELECT b.productId, b.productName FROM ProductSalesBucket b " +
+                            "WHERE b.granularity = :g AND b.productId IN :ids AND b.bucketStart = (" +
+                            "SELECT max(b2.bucketStart) FROM ProductSalesBucket b2 " +
+                            "WHERE b2.granularity = :g AND b2.productId = b.productId AND b2.bucketStart >= :from)",
+                            Object[].class)
+                    .setParameter("g", granularity)
+                    .setParameterList("ids", byId.keySet())
+                    .setParameter("from", from)
+                    .list()) {
+                byId.get((Long) row[0]).setName((String) row[1]);
             }
-            
-            // Fetch products by IDs
-            Query<Product> productQuery = session.createQuery(
-                    "FROM Product p WHERE p.productId IN :ids ORDER BY p.productId ASC", Product.class);
-            productQuery.setParameterList("ids", productIds);
-            List<Product> products = productQuery.list();
-            return products != null ? products : new java.util.ArrayList<>();
-        } catch (Exception e) {
-            e.printStackTrace();
-            return new java.util.ArrayList<>();
+            return ranked;
         }
     }
-}
\ No newline at end of file
+}
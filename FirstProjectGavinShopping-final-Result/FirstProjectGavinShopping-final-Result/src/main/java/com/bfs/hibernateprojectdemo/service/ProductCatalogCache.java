@@ -0,0 +1,108 @@
+package com.bfs.hibernateprojectdemo.service;
+
+import com.bfs.hibernateprojectdemo.domain.Product;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Product listings for /products/all, cached per view (admin sees every product, users only
+ * those in stock).
+ *
+ * Anything that changes a product row calls {@link #invalidateOnCommit(Session)}; once that
+ * transaction commits the catalog version is bumped and both views are dropped. Each cached
+ * listing remembers the version it was loaded under, so a load that raced with a commit is
+ * reloaded on its next read instead of being served. The TTL only bounds staleness from writes
+ * made outside this application.
+ */
+@Service
+public class ProductCatalogCache {
+
+    private final Cache<Boolean, Listing> listings;
+    private final AtomicLong version = new AtomicLong();
+    private final LongAdder staleReloads = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public ProductCatalogCache(@Value("${catalog.cache.max-products:10000}") long maxProducts,
+                               @Value("${catalog.cache.ttl-seconds:60}") long ttlSeconds) {
+        this.listings = Caffeine.newBuilder()
+                .maximumWeight(maxProducts)
+                .weigher((Boolean admin, Listing l) -> l.products.size())
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+    }
+
+    /** The cached listing for a view, loading it with {@code loader} when absent or stale. */
+    public List<Product> get(boolean admin, Supplier<List<Product>> loader) {
+        Listing cached = listings.get(admin, k -> load(loader));
+        if (cached.version == version.get()) return cached.products;
+        staleReloads.increment();
+        Listing fresh = load(loader);
+        listings.put(admin, fresh);
+        return fresh.products;
+    }
+
+    private Listing load(Supplier<List<Product>> loader) {
+        // Read the version first: a commit landing during the query leaves this listing stale
+        long v = version.get();
+        return new Listing(v, List.copyOf(loader.get()));
+    }
+
+    /** Drops the cached listings once the session's current transaction commits. */
+    public void invalidateOnCommit(Session session) {
+        session.getTransaction().registerSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) invalidate();
+            }
+        });
+    }
+
+    public void invalidate() {
+        version.incrementAndGet();
+        invalidations.increment();
+        listings.invalidateAll();
+    }
+
+    public Map<String, Object> snapshot() {
+        CacheStats stats = listings.stats();
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("hits", stats.hitCount());
+        out.put("misses", stats.missCount());
+        out.put("hitRate", stats.hitRate());
+        out.put("evictions", stats.evictionCount());
+        out.put("staleReloads", staleReloads.sum());
+        out.put("invalidations", invalidations.sum());
+        out.put("version", version.get());
+        out.put("views", listings.estimatedSize());
+        return out;
+    }
+
+    private static final class Listing {
+        final long version;
+        final List<Product> products;
+
+        Listing(long version, List<Product> products) {
+            this.version = version;
+            this.products = products;
+        }
+    }
+}
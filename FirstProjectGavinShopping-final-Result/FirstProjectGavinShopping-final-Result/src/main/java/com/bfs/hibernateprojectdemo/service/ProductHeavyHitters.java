@@ -0,0 +1,201 @@
+package com.bfs.hibernateprojectdemo.service;
+
+import com.bfs.hibernateprojectdemo.domain.Order;
+import com.bfs.hibernateprojectdemo.domain.OrderLine;
+import com.bfs.hibernateprojectdemo.dto.ApproxRankDto;
+import com.bfs.hibernateprojectdemo.dto.ApproxRanking;
+import com.bfs.hibernateprojectdemo.util.CountMinSketch;
+import com.bfs.hibernateprojectdemo.util.SpaceSaving;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Approximate top-N by order count and by units, in memory bounded by configuration rather than
+ * catalog size.
+ *
+ * Each metric has a Space-Saving summary (which products are heavy, with a deterministic error)
+ * and a Count-Min sketch (a second, independent upper bound). A reported estimate is the smaller
+ * of the two; the reported error bound is the tighter of total / capacity and epsilon * total.
+ *
+ * Fed directly by order completion (after commit), so it does not depend on the exact
+ * product_sales_stats rollup being maintained. At startup it is seeded by streaming completed
+ * order lines into a fresh set of summaries that is swapped in when done. Orders completing
+ * meanwhile are held back from the start and replayed afterwards unless the seed streamed them,
+ * so an order is counted once as long as its commit callback runs before the seed reaches it.
+ */
+@Service
+public class ProductHeavyHitters {
+
+    public enum Metric { FREQUENT, POPULAR }
+
+    private final SessionFactory sessionFactory;
+    private final int capacity;
+    private final double epsilon;
+    private final double delta;
+
+    // Guarded by this
+    private Summaries current;
+    private boolean seeding = true;
+    private final Map<Long, List<OrderLine>> heldBack = new LinkedHashMap<>();
+
+    public ProductHeavyHitters(SessionFactory sessionFactory,
+                               @Value("${analytics.heavy-hitters.capacity:1000}") int capacity,
+                               @Value("${analytics.heavy-hitters.epsilon:0.001}") double epsilon,
+                               @Value("${analytics.heavy-hitters.delta:0.01}") double delta) {
+        this.sessionFactory = sessionFactory;
+        this.capacity = capacity;
+        this.epsilon = epsilon;
+        this.delta = delta;
+        this.current = new Summaries();
+    }
+
+    /** Adds the order once the session's transaction commits; nothing if it rolls back. */
+    public void recordOnCommit(Session session, Order order) {
+        Long orderId = order.getId();
+        List<OrderLine> lines = new ArrayList<>(order.getLines());
+        session.getTransaction().registerSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) record(orderId, lines);
+            }
+        });
+    }
+
+    /** Adds one completed order: one occurrence per line for FREQUENT, its quantity for POPULAR. */
+    public synchronized void record(Long orderId, List<OrderLine> lines) {
+        if (seeding) {
+            heldBack.put(orderId, lines);
+            return;
+        }
+        for (OrderLine line : lines) {
+            current.add(line.getProductId(), line.getProductNameAtPurchase(), 1, line.getQuantity());
+        }
+    }
+
+    public synchronized ApproxRanking top(Metric metric, int n) {
+        SpaceSaving<Long> summary = current.summaries.get(metric);
+        CountMinSketch sketch = current.sketches.get(metric);
+        List<ApproxRankDto> items = new ArrayList<>(Math.min(n, summary.getCapacity()));
+        for (SpaceSaving.Counter<Long> c : summary.top(n)) {
+            long estimate = Math.min(c.getCount(), sketch.estimate(c.getKey()));
+            items.add(new ApproxRankDto(c.getKey(), current.names.get(c.getKey()), estimate, c.getCount() - c.getError()));
+        }
+        long ssBound = summary.errorBound();
+        long cmsBound = sketch.errorBound();
+        return ssBound <= cmsBound
+                ? new ApproxRanking(items, summary.getTotal(), ssBound, 1.0)
+                : new ApproxRanking(items, summary.getTotal(), cmsBound, sketch.getConfidence());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        try (Session s = sessionFactory.openSession();
+             ScrollableResults rows = s.createQuery(
+                             "select o.id, l.productId, l.productNameAtPurchase, l.quantity " +
+                             "from Order o join o.lines l where o.status = :status order by o.id")
+                     .setParameter("status", "Completed")
+                     .setFetchSize(500)
+                     .scroll(ScrollMode.FORWARD_ONLY)) {
+            seed(new Iterator<Object[]>() {
+                Boolean hasNext;
+
+                @Override
+                public boolean hasNext() {
+                    if (hasNext == null) hasNext = rows.next();
+                    return hasNext;
+                }
+
+                @Override
+                public Object[] next() {
+                    hasNext = null;
+                    return rows.get();
+                }
+            });
+        }
+    }
+
+    /**
+     * Builds fresh summaries from (orderId, productId, name, quantity) rows of completed orders and
+     * swaps them in. Held-back orders the rows already contain are dropped; the rest are replayed.
+     * If the rows fail part way, the held-back orders are still applied to the current summaries.
+     */
+    void seed(Iterator<Object[]> rows) {
+        Summaries fresh = new Summaries();
+        Summaries result = current;
+        try {
+            while (rows.hasNext()) {
+                Object[] row = rows.next();
+                synchronized (this) {
+                    heldBack.remove((Long) row[0]);
+                }
+                fresh.add((Long) row[1], (String) row[2], 1, ((Number) row[3]).longValue());
+            }
+            result = fresh;
+        } finally {
+            synchronized (this) {
+                current = result;
+                seeding = false;
+                for (Map.Entry<Long, List<OrderLine>> held : heldBack.entrySet()) {
+                    for (OrderLine line : held.getValue()) {
+                        current.add(line.getProductId(), line.getProductNameAtPurchase(), 1, line.getQuantity());
+                    }
+                }
+                heldBack.clear();
+            }
+        }
+    }
+
+    private final class Summaries {
+        final Map<Metric, SpaceSaving<Long>> summaries = new HashMap<>();
+        final Map<Metric, CountMinSketch> sketches = new HashMap<>();
+        // Names of monitored products only, so this is bounded by 2 * capacity
+        final Map<Long, String> names = new HashMap<>();
+
+        Summaries() {
+            for (Metric m : Metric.values()) {
+                summaries.put(m, new SpaceSaving<>(capacity));
+                sketches.put(m, new CountMinSketch(epsilon, delta));
+            }
+        }
+
+        void add(long productId, String name, long orders, long units) {
+            Long evictedFrequent = offer(Metric.FREQUENT, productId, orders);
+            Long evictedPopular = offer(Metric.POPULAR, productId, units);
+            names.put(productId, name);
+            forgetIfUnmonitored(evictedFrequent);
+            forgetIfUnmonitored(evictedPopular);
+        }
+
+        private Long offer(Metric metric, long productId, long weight) {
+            sketches.get(metric).add(productId, weight);
+            return summaries.get(metric).offer(productId, weight);
+        }
+
+        private void forgetIfUnmonitored(Long productId) {
+            if (productId == null) return;
+            for (SpaceSaving<Long> summary : summaries.values()) {
+                if (summary.contains(productId)) return;
+            }
+            names.remove(productId);
+        }
+    }
+}
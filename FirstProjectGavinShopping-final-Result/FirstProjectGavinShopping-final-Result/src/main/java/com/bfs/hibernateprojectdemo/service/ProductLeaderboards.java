@@ -0,0 +1,188 @@
+package com.bfs.hibernateprojectdemo.service;
+
+import com.bfs.hibernateprojectdemo.domain.ProductSalesStats;
+import com.bfs.hibernateprojectdemo.dto.ProductRankDto;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process top-N rankings over product_sales_stats, so the admin analytics endpoints are
+ * answered without touching the database.
+ *
+ * Each ranking is a skip list ordered by score desc, then productId asc. Writers replace a
+ * product's entries under one of a fixed set of striped locks. Readers never lock: they scan
+ * optimistically and keep the result only if no writer was active or started meanwhile, since a
+ * moving entry could otherwise be skipped or seen twice. Under constant write churn a reader
+ * falls back to ranking a copy of the current scores.
+ *
+ * Scores are published after the completing transaction commits (see ProductSalesStatsService),
+ * rebuilt from the table at startup and reconciled periodically. orderCount only grows, so it
+ * orders snapshots: an older snapshot never overwrites a newer one.
+ */
+@Service
+public class ProductLeaderboards {
+
+    public enum Ranking { FREQUENT, RECENT, PROFIT, POPULAR }
+
+    private static final int STRIPES = 64;
+    private static final int OPTIMISTIC_READS = 4;
+
+    private static final Comparator<Entry> RANK_ORDER = Comparator
+            .comparingDouble((Entry e) -> e.score).reversed()
+            .thenComparingLong(e -> e.productId);
+
+    private final SessionFactory sessionFactory;
+    private final Map<Ranking, ConcurrentSkipListSet<Entry>> boards = new EnumMap<>(Ranking.class);
+    private final Map<Long, Score> scores = new ConcurrentHashMap<>();
+    private final Object[] stripes = new Object[STRIPES];
+    // Bumped when a write starts; with the active-writer count this validates optimistic reads
+    private final AtomicLong writeVersion = new AtomicLong();
+    private final AtomicInteger activeWriters = new AtomicInteger();
+    private volatile boolean ready;
+
+    public ProductLeaderboards(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+        for (Ranking r : Ranking.values()) {
+            boards.put(r, new ConcurrentSkipListSet<>(RANK_ORDER));
+        }
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    /** False until the first rebuild from the table has finished. */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /** The top {@code n} products in rank order, with their scores. */
+    public List<ProductRankDto> top(Ranking ranking, int n) {
+        for (int attempt = 0; attempt < OPTIMISTIC_READS; attempt++) {
+            long version = writeVersion.get();
+            if (activeWriters.get() != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            List<Score> out = new ArrayList<>(Math.min(n, 64));
+            for (Entry e : boards.get(ranking)) {
+                out.add(e.owner);
+                if (out.size() == n) break;
+            }
+            if (writeVersion.get() == version) return toDtos(out);
+        }
+        List<Score> out = new ArrayList<>(Math.min(n, 64));
+        scores.values().stream()
+                .sorted(Comparator.comparingDouble((Score s) -> s.score(ranking)).reversed()
+                        .thenComparingLong(s -> s.productId))
+                .limit(n)
+                .forEach(out::add);
+        return toDtos(out);
+    }
+
+    private static List<ProductRankDto> toDtos(List<Score> ranked) {
+        List<ProductRankDto> dtos = new ArrayList<>(ranked.size());
+        for (Score s : ranked) {
+            dtos.add(new ProductRankDto(s.productId, s.productName, s.orderCount, s.units, s.profit, s.lastOrderTime));
+        }
+        return dtos;
+    }
+
+    public void update(Score s) {
+        synchronized (stripes[(int) Math.floorMod(s.productId, (long) STRIPES)]) {
+            Score old = scores.get(s.productId);
+            if (old != null && old.orderCount >= s.orderCount) return; // stale or unchanged snapshot
+            activeWriters.incrementAndGet();
+            writeVersion.incrementAndGet();
+            try {
+                for (Ranking r : Ranking.values()) {
+                    if (old != null) boards.get(r).remove(new Entry(old, r));
+                    boards.get(r).add(new Entry(s, r));
+                }
+                scores.put(s.productId, s);
+            } finally {
+                activeWriters.decrementAndGet();
+            }
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        reconcile();
+        ready = true;
+    }
+
+    // Repairs drift (e.g. a publish lost to a crash between commit and callback) from the table
+    @Scheduled(fixedDelayString = "${analytics.leaderboard.reconcile-interval-ms:300000}",
+            initialDelayString = "${analytics.leaderboard.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        try (Session s = sessionFactory.openSession()) {
+            for (ProductSalesStats stats : s.createQuery("from ProductSalesStats", ProductSalesStats.class).list()) {
+                update(Score.of(stats));
+            }
+        }
+    }
+
+    /** Immutable copy of one product_sales_stats row. */
+    public static final class Score {
+        final long productId;
+        final String productName;
+        final long orderCount;
+        final long units;
+        final double profit;
+        final LocalDateTime lastOrderTime;
+        final long lastOrderMillis;
+
+        Score(long productId, String productName, long orderCount, long units, double profit,
+              LocalDateTime lastOrderTime) {
+            this.productId = productId;
+            this.productName = productName;
+            this.orderCount = orderCount;
+            this.units = units;
+            this.profit = profit;
+            this.lastOrderTime = lastOrderTime;
+            this.lastOrderMillis = lastOrderTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+        }
+
+        public static Score of(ProductSalesStats s) {
+            return new Score(s.getProductId(), s.getProductName(), s.getOrderCount(), s.getUnits(), s.getProfit(),
+                    s.getLastOrderTime());
+        }
+
+        double score(Ranking r) {
+            switch (r) {
+                case FREQUENT: return orderCount;
+                case RECENT: return lastOrderMillis;
+                case PROFIT: return profit;
+                default: return units;
+            }
+        }
+    }
+
+    private static final class Entry {
+        final long productId;
+        final double score;
+        final Score owner;
+
+        Entry(Score owner, Ranking ranking) {
+            this.productId = owner.productId;
+            this.score = owner.score(ranking);
+            this.owner = owner;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.bfs.hibernateprojectdemo.service;
+
+import com.bfs.hibernateprojectdemo.domain.Order;
+import com.bfs.hibernateprojectdemo.domain.OrderLine;
+import com.bfs.hibernateprojectdemo.domain.ProductSalesBucket;
+import com.bfs.hibernateprojectdemo.domain.ProductSalesStats;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps product_sales_stats and the hourly/daily product_sales_buckets in step with completed orders.
+ *
+ * Runs inside the caller's transaction, so the aggregates commit or roll back together with the
+ * status change. Each line is one upsert per table; lines come sorted by product id, so concurrent
+ * completions lock stats rows, then bucket rows, in the same order. The updated stats rows are
+ * published to ProductLeaderboards only once the transaction has committed.
+ *
+ * With analytics.exact-rollups.enabled=false none of this is maintained and only the approximate
+ * rankings (ProductHeavyHitters, fed by order completion directly) stay current.
+ */
+@Service
+public class ProductSalesStatsService {
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO product_sales_stats (productId, productName, orderCount, units, profit, lastOrderTime) " +
+                    "VALUES (?, ?, 1, ?, ?, ?) " +
+                    "ON DUPLICATE KEY UPDATE " +
+                    "productName = CASE WHEN ? >= lastOrderTime THEN ? ELSE productName END, " +
+                    "orderCount = orderCount + 1, units = units + ?, profit = profit + ?, " +
+                    "lastOrderTime = GREATEST(lastOrderTime, ?)";
+
+    private static final String BUCKET_UPSERT_SQL =
+            "INSERT INTO product_sales_buckets " +
+                    "(granularity, bucketStart, productId, productName, orderCount, units, profit, lastOrderTime) " +
+                    "VALUES (?, ?, ?, ?, 1, ?, ?, ?) " +
+                    "ON DUPLICATE KEY UPDATE " +
+                    "productName = CASE WHEN ? >= lastOrderTime THEN ? ELSE productName END, " +
+                    "orderCount = orderCount + 1, units = units + ?, profit = profit + ?, " +
+                    "lastOrderTime = GREATEST(lastOrderTime, ?)";
+
+    private final SessionFactory sessionFactory;
+    private final ProductLeaderboards leaderboards;
+    private final boolean enabled;
+    private final int hourlyRetentionDays;
+    private final int dailyRetentionDays;
+
+    public ProductSalesStatsService(SessionFactory sessionFactory, ProductLeaderboards leaderboards,
+                                    @Value("${analytics.exact-rollups.enabled:true}") boolean enabled,
+                                    @Value("${analytics.buckets.hourly-retention-days:8}") int hourlyRetentionDays,
+                                    @Value("${analytics.buckets.daily-retention-days:400}") int dailyRetentionDays) {
+        this.sessionFactory = sessionFactory;
+        this.leaderboards = leaderboards;
+        this.enabled = enabled;
+        this.hourlyRetentionDays = hourlyRetentionDays;
+        this.dailyRetentionDays = dailyRetentionDays;
+    }
+
+    /** Adds every line of a just-completed order to the rollup and its time buckets, one JDBC batch each. */
+    public void recordCompleted(Session session, Order order) {
+        if (!enabled || order.getLines().isEmpty()) return;
+        Timestamp orderTime = Timestamp.valueOf(order.getOrderTime());
+        Timestamp hour = Timestamp.valueOf(order.getOrderTime().truncatedTo(ChronoUnit.HOURS));
+        Timestamp day = Timestamp.valueOf(order.getOrderTime().truncatedTo(ChronoUnit.DAYS));
+        session.doWork(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(UPSERT_SQL)) {
+                for (OrderLine line : order.getLines()) {
+                    double profit = (line.getRetailPriceAtPurchase() - line.getWholesalePriceAtPurchase())
+                            * line.getQuantity();
+                    ps.setLong(1, line.getProductId());
+                    ps.setString(2, line.getProductNameAtPurchase());
+                    ps.setLong(3, line.getQuantity());
+                    ps.setDouble(4, profit);
+                    ps.setTimestamp(5, orderTime);
+                    ps.setTimestamp(6, orderTime);
+                    ps.setString(7, line.getProductNameAtPurchase());
+                    ps.setLong(8, line.getQuantity());
+                    ps.setDouble(9, profit);
+                    ps.setTimestamp(10, orderTime);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            try (PreparedStatement ps = connection.prepareStatement(BUCKET_UPSERT_SQL)) {
+                addBuckets(ps, order, ProductSalesBucket.HOURLY, hour, orderTime);
+                addBuckets(ps, order, ProductSalesBucket.DAILY, day, orderTime);
+                ps.executeBatch();
+            }
+        });
+
+        // Our upserts hold these rows locked, so this read is exactly what will commit
+        List<Long> productIds = new ArrayList<>();
+        for (OrderLine line : order.getLines()) productIds.add(line.getProductId());
+        List<ProductLeaderboards.Score> updated = new ArrayList<>();
+        for (ProductSalesStats stats : session.createQuery(
+                        "from ProductSalesStats s where s.productId in :ids", ProductSalesStats.class)
+                .setParameterList("ids", productIds)
+                .list()) {
+            updated.add(ProductLeaderboards.Score.of(stats));
+        }
+        session.getTransaction().registerSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status != Status.STATUS_COMMITTED) return;
+                for (ProductLeaderboards.Score score : updated) leaderboards.update(score);
+            }
+        });
+    }
+
+    private static void addBuckets(PreparedStatement ps, Order order, String granularity, Timestamp bucketStart,
+                                   Timestamp orderTime) throws SQLException {
+        for (OrderLine line : order.getLines()) {
+            double profit = (line.getRetailPriceAtPurchase() - line.getWholesalePriceAtPurchase()) * line.getQuantity();
+            ps.setString(1, granularity);
+            ps.setTimestamp(2, bucketStart);
+            ps.setLong(3, line.getProductId());
+            ps.setString(4, line.getProductNameAtPurchase());
+            ps.setLong(5, line.getQuantity());
+            ps.setDouble(6, profit);
+            ps.setTimestamp(7, orderTime);
+            ps.setTimestamp(8, orderTime);
+            ps.setString(9, line.getProductNameAtPurchase());
+            ps.setLong(10, line.getQuantity());
+            ps.setDouble(11, profit);
+            ps.setTimestamp(12, orderTime);
+            ps.addBatch();
+        }
+    }
+
+    // Hourly buckets only serve short windows; both granularities are trimmed to their retention
+    @Scheduled(fixedDelayString = "${analytics.buckets.purge-interval-ms:3600000}")
+    public void purgeExpiredBuckets() {
+        LocalDateTime now = LocalDateTime.now();
+        try (Session s = sessionFactory.openSession()) {
+            Transaction tx = s.beginTransaction();
+            s.createQuery("delete from ProductSalesBucket b where b.granularity = :g and b.bucketStart < :before")
+                    .setParameter("g", ProductSalesBucket.HOURLY)
+                    .setParameter("before", now.minusDays(hourlyRetentionDays))
+                    .executeUpdate();
+            s.createQuery("delete from ProductSalesBucket b where b.granularity = :g and b.bucketStart < :before")
+                    .setParameter("g", ProductSalesBucket.DAILY)
+                    .setParameter("before", now.minusDays(dailyRetentionDays))
+                    .executeUpdate();
+            tx.commit();
+        }
+    }
+}
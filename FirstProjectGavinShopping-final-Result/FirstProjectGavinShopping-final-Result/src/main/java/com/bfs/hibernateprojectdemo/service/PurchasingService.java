@@ -1,6 +1,7 @@
 package com.bfs.hibernateprojectdemo.service;
 
 import com.bfs.hibernateprojectdemo.domain.Order;
+import com.bfs.hibernateprojectdemo.domain.OrderLine;
 import com.bfs.hibernateprojectdemo.domain.Product;
 import com.bfs.hibernateprojectdemo.exception.NotEnoughInventoryException;
 import org.hibernate.Session;
@@ -15,6 +16,8 @@ import java.time.LocalDateTime;
 public class PurchasingService {
     @Autowired
     private SessionFactory sessionFactory;
+    @Autowired
+    private InventoryService inventoryService;
 
     public boolean purchaseProduct(Long userId, Long productId, int quantity) {
         try (Session session = sessionFactory.openSession()) {
@@ -26,30 +29,27 @@ public class PurchasingService {
                 throw new IllegalArgumentException("Product not found: " + productId);
             }
 
-            if (quantity > product.getQuantity()) {
+            // Guarded decrement: succeeds only if enough stock remains at write time
+            if (!inventoryService.reserve(session, productId, quantity)) {
                 tx.rollback();
                 throw new NotEnoughInventoryException("Not enough stock for product: " + product.getName());
             }
+            inventoryService.removeIfDepleted(session, productId);
 
-            // Deduct stock and delete if non-positive
-            int newQty = product.getQuantity() - quantity;
-            if (newQty <= 0) {
-                session.delete(product);
-            } else {
-                product.setQuantity(newQty);
-                session.update(product);
-            }
-
-            // Create order
+            // Create order with a single line
             Order order = new Order();
             order.setUserId(userId);
-            order.setProductId(productId);
-            order.setQuantity(quantity);
             order.setStatus("Processing");
             order.setOrderTime(LocalDateTime.now());
-            // Snapshot product name and description at purchase time
-            order.setProductNameAtPurchase(product.getName());
-            order.setProductDescriptionAtPurchase(product.getDescription());
+            OrderLine line = new OrderLine();
+            line.setProductId(productId);
+            line.setQuantity(quantity);
+            // Snapshot prices, product name and description at purchase time
+            line.setRetailPriceAtPurchase(product.getRetailPrice());
+            line.setWholesalePriceAtPurchase(product.getWholesalePrice());
+            line.setProductNameAtPurchase(product.getName());
+            line.setProductDescriptionAtPurchase(product.getDescription());
+            order.addLine(line);
 
             session.persist(order);
             tx.commit();
@@ -77,9 +77,9 @@ public class PurchasingService {
             if ("Processing".equals(order.getStatus())) {
                 order.setStatus("Canceled");
 
-                Product product = session.get(Product.class, order.getProductId());
-                product.setQuantity(product.getQuantity() + order.getQuantity());
-                session.update(product);
+                for (OrderLine line : order.getLines()) {
+                    inventoryService.restock(session, line.getProductId(), line.getQuantity());
+                }
 
                 session.update(order);
                 tx.commit();
@@ -0,0 +1,398 @@
+package com.bfs.hibernateprojectdemo.service;
+
+import com.bfs.hibernateprojectdemo.domain.AuditLog;
+import com.bfs.hibernateprojectdemo.util.BoundedMpmcQueue;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Write-behind audit sink (audit.sink=queue, the default). append() puts the entry on a bounded
+ * lock-free queue; one background writer inserts queued entries in a single transaction every
+ * audit.writer.batch-size entries or audit.writer.flush-interval-ms, whichever comes first.
+ *
+ * When the queue is full the overflow policy decides: BLOCK waits for the writer, DROP_OLDEST
+ * discards the oldest queued entry, SPILL appends the entry to the spill file. Batches that fail to
+ * insert are spilled too, and the writer replays the spill file whenever it catches up. The queue is
+ * drained on shutdown. Entries reach the table up to one flush interval after the change commits.
+ */
+@Component
+@ConditionalOnProperty(name = "audit.sink", havingValue = "queue", matchIfMissing = true)
+public class QueuedAuditSink implements AuditSink {
+
+    private static final Logger log = LoggerFactory.getLogger(QueuedAuditSink.class);
+
+    public enum OverflowPolicy { BLOCK, DROP_OLDEST, SPILL }
+
+    private final SessionFactory sessionFactory;
+    private final BoundedMpmcQueue<Pending> queue;
+    private final OverflowPolicy overflowPolicy;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final long retryBackoffNanos;
+    private final long shutdownTimeoutMillis;
+    private final Path spillFile;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Object spillLock = new Object();
+    // Guarded by spillLock; until checked, the spill file may end in a line torn by a crash
+    private boolean spillTailChecked;
+
+    private final Thread writer;
+    private volatile boolean running = true;
+    private volatile long lastFailureNanos;
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder spilled = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder writeFailures = new LongAdder();
+    private final LongAdder blockedNanos = new LongAdder();
+    private final LongAccumulator lagNanosMax = new LongAccumulator(Math::max, 0L);
+    private volatile long lastLagNanos;
+
+    public QueuedAuditSink(SessionFactory sessionFactory,
+                           @Value("${audit.writer.queue-capacity:8192}") int queueCapacity,
+                           @Value("${audit.writer.batch-size:50}") int batchSize,
+                           @Value("${audit.writer.flush-interval-ms:200}") long flushIntervalMillis,
+                           @Value("${audit.writer.overflow-policy:SPILL}") OverflowPolicy overflowPolicy,
+                           @Value("${audit.writer.spill-file:audit-spill.ndjson}") String spillFile,
+                           @Value("${audit.writer.retry-backoff-ms:5000}") long retryBackoffMillis,
+                           @Value("${audit.writer.shutdown-timeout-ms:10000}") long shutdownTimeoutMillis) {
+        this.sessionFactory = sessionFactory;
+        this.queue = new BoundedMpmcQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.overflowPolicy = overflowPolicy;
+        this.spillFile = Paths.get(spillFile);
+        this.retryBackoffNanos = TimeUnit.MILLISECONDS.toNanos(retryBackoffMillis);
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+        this.writer = new Thread(this::runWriter, "audit-writer");
+        this.writer.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        writer.start();
+    }
+
+    @Override
+    public void append(AuditLog entry) {
+        enqueue(new Pending(entry, System.nanoTime()));
+    }
+
+    private void enqueue(Pending pending) {
+        enqueued.increment();
+        if (!queue.offer(pending)) {
+            switch (overflowPolicy) {
+                case BLOCK:
+                    long start = System.nanoTime();
+                    while (!queue.offer(pending)) {
+                        LockSupport.unpark(writer);
+                        LockSupport.parkNanos(100_000);
+                    }
+                    blockedNanos.add(System.nanoTime() - start);
+                    break;
+                case DROP_OLDEST:
+                    while (!queue.offer(pending)) {
+                        if (queue.poll() != null) dropped.increment();
+                    }
+                    break;
+                case SPILL:
+                    spill(List.of(pending.entry));
+                    break;
+            }
+        }
+        if (queue.size() >= batchSize) LockSupport.unpark(writer);
+    }
+
+    private void runWriter() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            queue.drainTo(batch, batchSize - batch.size());
+            // Measured from the oldest entry, so no entry waits much longer than one interval
+            long waited = batch.isEmpty() ? 0 : System.nanoTime() - batch.get(0).enqueuedAt;
+            if (!batch.isEmpty() && (batch.size() >= batchSize || waited >= flushIntervalNanos || !running)) {
+                write(batch);
+                batch.clear();
+            } else if (batch.isEmpty() && replaySpillIfDue()) {
+                continue;
+            } else {
+                LockSupport.parkNanos(batch.isEmpty() ? flushIntervalNanos : flushIntervalNanos - waited);
+            }
+        }
+        if (!batch.isEmpty()) write(batch);
+    }
+
+    private void write(List<Pending> batch) {
+        List<AuditLog> entries = new ArrayList<>(batch.size());
+        for (Pending p : batch) entries.add(p.entry);
+        if (!insert(entries)) {
+            spill(entries);
+            return;
+        }
+        long now = System.nanoTime();
+        long lag = now - batch.get(0).enqueuedAt;
+        lastLagNanos = lag;
+        lagNanosMax.accumulate(lag);
+    }
+
+    private boolean insert(List<AuditLog> entries) {
+        try (Session s = sessionFactory.openSession()) {
+            Transaction tx = s.beginTransaction();
+            try {
+                for (AuditLog entry : entries) s.persist(entry);
+                tx.commit();
+            } catch (RuntimeException e) {
+                if (tx.isActive()) tx.rollback();
+                throw e;
+            }
+            written.add(entries.size());
+            batches.increment();
+            return true;
+        } catch (RuntimeException e) {
+            writeFailures.increment();
+            lastFailureNanos = System.nanoTime();
+            log.warn("Could not write {} audit entries, spilling them", entries.size(), e);
+            return false;
+        }
+    }
+
+    // Appended as one JSON object per line; the id is left out so replays insert fresh rows
+    private void spill(List<AuditLog> entries) {
+        synchronized (spillLock) {
+            try {
+                // Start a fresh line so the torn one does not swallow the first entry
+                boolean torn = !spillTailChecked && endsMidLine(spillFile);
+                spillTailChecked = true;
+                try (BufferedWriter out = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    if (torn) out.newLine();
+                    for (AuditLog entry : entries) {
+                        out.write(toLine(entry));
+                        out.newLine();
+                    }
+                }
+                spilled.add(entries.size());
+            } catch (IOException e) {
+                spillTailChecked = false;
+                dropped.add(entries.size());
+                log.error("Could not spill {} audit entries to {}", entries.size(), spillFile, e);
+            }
+        }
+    }
+
+    /**
+     * Only when the queue is idle and the last failure is older than the retry backoff. The spill file
+     * is claimed by renaming it to .replaying; the number of its lines already inserted or re-spilled
+     * is kept in .replayed, so a replay cut short resumes after them instead of inserting them twice.
+     */
+    boolean replaySpillIfDue() {
+        if (lastFailureNanos != 0 && System.nanoTime() - lastFailureNanos < retryBackoffNanos) return false;
+        Path replaying = spillFile.resolveSibling(spillFile.getFileName() + ".replaying");
+        Path position = spillFile.resolveSibling(spillFile.getFileName() + ".replayed");
+        synchronized (spillLock) {
+            if (!Files.exists(replaying)) {
+                try {
+                    if (!Files.exists(spillFile) || Files.size(spillFile) == 0) return false;
+                    // Left over from a replay that finished just before a crash
+                    Files.deleteIfExists(position);
+                    Files.move(spillFile, replaying, StandardCopyOption.ATOMIC_MOVE);
+                    spillTailChecked = true;
+                } catch (IOException e) {
+                    log.warn("Could not claim audit spill file {}", spillFile, e);
+                    return false;
+                }
+            }
+        }
+        long done = readReplayPosition(position);
+        long lineNo = 0;
+        try (BufferedReader in = Files.newBufferedReader(replaying, StandardCharsets.UTF_8)) {
+            List<AuditLog> entries = new ArrayList<>(batchSize);
+            String line;
+            boolean failed = false;
+            while ((line = in.readLine()) != null) {
+                if (++lineNo <= done || line.isEmpty()) continue;
+                try {
+                    entries.add(fromLine(line));
+                } catch (IOException | RuntimeException e) {
+                    // Typically the last line, torn by a crash mid-spill
+                    dropped.increment();
+                    log.warn("Skipping unreadable line {} of audit spill file {}: {}", lineNo, replaying, e.toString());
+                }
+                if (entries.size() == batchSize) {
+                    failed = flushReplay(entries, failed);
+                    saveReplayPosition(position, lineNo);
+                }
+            }
+            if (!entries.isEmpty()) flushReplay(entries, failed);
+        } catch (IOException e) {
+            // Resumed after the saved position once the backoff has passed
+            lastFailureNanos = System.nanoTime();
+            log.warn("Could not replay audit spill file {}", replaying, e);
+            return false;
+        }
+        try {
+            saveReplayPosition(position, lineNo);
+            Files.delete(replaying);
+            Files.deleteIfExists(position);
+        } catch (IOException e) {
+            log.warn("Could not delete replayed audit spill file {}", replaying, e);
+        }
+        return true;
+    }
+
+    private long readReplayPosition(Path position) {
+        try {
+            return Files.exists(position) ? Long.parseLong(Files.readString(position).trim()) : 0;
+        } catch (IOException | NumberFormatException e) {
+            // Replays from the start: entries may be inserted twice, but none is lost
+            log.warn("Could not read audit spill replay position {}", position, e);
+            return 0;
+        }
+    }
+
+    private void saveReplayPosition(Path position, long lines) {
+        try {
+            Files.writeString(position, Long.toString(lines));
+        } catch (IOException e) {
+            log.warn("Could not save audit spill replay position {}", position, e);
+        }
+    }
+
+    private static boolean endsMidLine(Path file) throws IOException {
+        if (!Files.exists(file)) return false;
+        try (SeekableByteChannel ch = Files.newByteChannel(file, StandardOpenOption.READ)) {
+            if (ch.size() == 0) return false;
+            ByteBuffer last = ByteBuffer.allocate(1);
+            ch.position(ch.size() - 1).read(last);
+            return last.get(0) != '\n';
+        }
+    }
+
+    // After one failure the rest of the file goes straight back to the spill file
+    private boolean flushReplay(List<AuditLog> entries, boolean failed) {
+        if (failed || !insert(entries)) {
+            spill(entries);
+            failed = true;
+        } else {
+            replayed.add(entries.size());
+        }
+        entries.clear();
+        return failed;
+    }
+
+    private String toLine(AuditLog entry) throws IOException {
+        ObjectNode node = mapper.createObjectNode();
+        node.put("resourceType", entry.getResourceType());
+        node.put("resourceId", entry.getResourceId());
+        node.put("userId", entry.getUserId());
+        node.put("changeSet", entry.getChangeSet());
+        node.put("timestamp", entry.getTimestamp().toString());
+        node.put("previousVersion", entry.getPreviousVersion());
+        node.put("newVersion", entry.getNewVersion());
+        return mapper.writeValueAsString(node);
+    }
+
+    private AuditLog fromLine(String line) throws IOException {
+        JsonNode node = mapper.readTree(line);
+        AuditLog entry = new AuditLog();
+        entry.setResourceType(node.path("resourceType").asText());
+        entry.setResourceId(node.path("resourceId").asLong());
+        entry.setUserId(node.path("userId").isNull() ? null : node.path("userId").asLong());
+        entry.setChangeSet(node.path("changeSet").isNull() ? null : node.path("changeSet").asText());
+        entry.setTimestamp(LocalDateTime.parse(node.path("timestamp").asText()));
+        entry.setPreviousVersion(node.path("previousVersion").isNull() ? null : node.path("previousVersion").asLong());
+        entry.setNewVersion(node.path("newVersion").isNull() ? null : node.path("newVersion").asLong());
+        return entry;
+    }
+
+    // Queued entries cannot be searched without draining the queue
+    @Override
+    public List<AuditLog> findLocal(String resourceType, Long resourceId, LocalDateTime since) {
+        return List.of();
+    }
+
+    @Override
+    public Map<String, Object> snapshot() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("overflowPolicy", overflowPolicy.name());
+        out.put("queueDepth", queue.size());
+        out.put("queueCapacity", queue.capacity());
+        out.put("enqueued", enqueued.sum());
+        out.put("written", written.sum());
+        out.put("batches", batches.sum());
+        out.put("dropped", dropped.sum());
+        out.put("spilled", spilled.sum());
+        out.put("replayed", replayed.sum());
+        out.put("writeFailures", writeFailures.sum());
+        out.put("blockedMillis", TimeUnit.NANOSECONDS.toMillis(blockedNanos.sum()));
+        out.put("lagLastMillis", TimeUnit.NANOSECONDS.toMillis(lastLagNanos));
+        out.put("lagMaxMillis", TimeUnit.NANOSECONDS.toMillis(lagNanosMax.get()));
+        try {
+            out.put("spillFileBytes", Files.exists(spillFile) ? Files.size(spillFile) : 0);
+        } catch (IOException e) {
+            out.put("spillFileBytes", -1);
+        }
+        return out;
+    }
+
+    // Drains what is queued before the session factory closes; whatever is left is spilled
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(shutdownTimeoutMillis);
+        // poll is safe alongside a writer still draining; the daemon writer dies with the JVM
+        List<AuditLog> left = new ArrayList<>();
+        Pending p;
+        while ((p = queue.poll()) != null) left.add(p.entry);
+        if (writer.isAlive()) log.warn("Audit writer did not drain within {} ms", shutdownTimeoutMillis);
+        if (!left.isEmpty()) {
+            spill(left);
+            log.warn("Spilled {} queued audit entries to {} on shutdown", left.size(), spillFile);
+        }
+    }
+
+    private static final class Pending {
+        final AuditLog entry;
+        final long enqueuedAt;
+
+        Pending(AuditLog entry, long enqueuedAt) {
+            this.entry = entry;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.bfs.hibernateprojectdemo.util;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free multi-producer multi-consumer ring buffer (Vyukov's array queue).
+ *
+ * Each slot carries a sequence number: a producer may fill slot {@code pos & mask} when its sequence
+ * equals {@code pos}, a consumer may empty it when the sequence equals {@code pos + 1}. Claiming a
+ * position is a single CAS on the tail or head counter; nothing ever blocks. Capacity is rounded up
+ * to a power of two.
+ */
+public final class BoundedMpmcQueue<E> {
+
+    private final int mask;
+    private final AtomicReferenceArray<E> items;
+    private final AtomicLongArray sequences;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    public BoundedMpmcQueue(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be >= 1");
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) size <<= 1;
+        this.mask = size - 1;
+        this.items = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) sequences.set(i, i);
+    }
+
+    /** @return false if the queue is full */
+    public boolean offer(E e) {
+        if (e == null) throw new NullPointerException();
+        long pos = tail.get();
+        while (true) {
+            int idx = (int) (pos & mask);
+            long dif = sequences.get(idx) - pos;
+            if (dif == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    items.set(idx, e);
+                    // Publishes the item to the consumer that claims this position
+                    sequences.set(idx, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (dif < 0) {
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    /** @return the oldest element, or null if the queue is empty */
+    public E poll() {
+        long pos = head.get();
+        while (true) {
+            int idx = (int) (pos & mask);
+            long dif = sequences.get(idx) - (pos + 1);
+            if (dif == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    E e = items.get(idx);
+                    items.set(idx, null);
+                    // Frees the slot for the producer one lap ahead
+                    sequences.set(idx, pos + mask + 1);
+                    return e;
+                }
+                pos = head.get();
+            } else if (dif < 0) {
+                return null;
+            } else {
+                pos = head.get();
+            }
+        }
+    }
+
+    /** Moves up to {@code max} elements into {@code sink}, oldest first. */
+    public int drainTo(Collection<? super E> sink, int max) {
+        int n = 0;
+        E e;
+        while (n < max && (e = poll()) != null) {
+            sink.add(e);
+            n++;
+        }
+        return n;
+    }
+
+    /** Approximate under concurrent use. */
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, mask + 1));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,177 @@
+package com.bfs.hibernateprojectdemo.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Field-by-field diff of two instances of an audited entity, rendered as the audit change set
+ * {"field":{"from":..,"to":..},...} with only the fields that differ.
+ *
+ * Fields are declared once with typed getters, so primitives are compared and written without
+ * boxing. Each thread reuses one generator over a resettable buffer; field names are pre-encoded.
+ * Strings are escaped by Jackson, other values go through the mapper's serializers.
+ */
+public final class ChangeSetDiff<T> {
+
+    private static final SerializedString FROM = new SerializedString("from");
+    private static final SerializedString TO = new SerializedString("to");
+
+    private final Field<T>[] fields;
+    private final JsonFactory factory;
+    private final ThreadLocal<Buffer> buffers = new ThreadLocal<>();
+
+    private ChangeSetDiff(List<Field<T>> fields, ObjectMapper mapper) {
+        @SuppressWarnings("unchecked")
+        Field<T>[] array = fields.toArray(new Field[0]);
+        this.fields = array;
+        this.factory = mapper.getFactory();
+    }
+
+    public static <T> Builder<T> builder(Class<T> type) {
+        return new Builder<>();
+    }
+
+    /** @return the change set from {@code before} to {@code after}; "{}" if no declared field changed */
+    public String diff(T before, T after) {
+        // The common no-op PATCH never touches the generator
+        if (!differs(before, after)) return "{}";
+        Buffer buf = buffers.get();
+        if (buf == null) {
+            buf = new Buffer(factory);
+            buffers.set(buf);
+        }
+        buf.out.reset();
+        try {
+            write(before, after, buf.gen);
+            buf.gen.flush();
+        } catch (IOException | RuntimeException e) {
+            // The generator may be mid-object; start this thread over with a fresh one
+            buffers.remove();
+            if (e instanceof IOException) throw new UncheckedIOException((IOException) e);
+            throw (RuntimeException) e;
+        }
+        return buf.out.toString();
+    }
+
+    public boolean differs(T before, T after) {
+        for (Field<T> f : fields) {
+            if (f.differs(before, after)) return true;
+        }
+        return false;
+    }
+
+    /** Writes the change set as one object to {@code gen}; returns whether any field differed. */
+    public boolean write(T before, T after, JsonGenerator gen) throws IOException {
+        gen.writeStartObject();
+        boolean changed = false;
+        for (Field<T> f : fields) {
+            if (f.differs(before, after)) {
+                gen.writeFieldName(f.name);
+                gen.writeStartObject();
+                gen.writeFieldName(FROM);
+                f.write(before, gen);
+                gen.writeFieldName(TO);
+                f.write(after, gen);
+                gen.writeEndObject();
+                changed = true;
+            }
+        }
+        gen.writeEndObject();
+        return changed;
+    }
+
+    public static final class Builder<T> {
+        private final List<Field<T>> fields = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        public Builder<T> text(String name, Function<T, String> getter) {
+            fields.add(new Field<T>(name) {
+                boolean differs(T a, T b) { return !Objects.equals(getter.apply(a), getter.apply(b)); }
+                void write(T o, JsonGenerator g) throws IOException { g.writeString(getter.apply(o)); }
+            });
+            return this;
+        }
+
+        public Builder<T> decimal(String name, ToDoubleFunction<T> getter) {
+            fields.add(new Field<T>(name) {
+                // Same equality as Double.equals: NaN equals NaN, 0.0 differs from -0.0
+                boolean differs(T a, T b) {
+                    return Double.doubleToLongBits(getter.applyAsDouble(a)) != Double.doubleToLongBits(getter.applyAsDouble(b));
+                }
+                void write(T o, JsonGenerator g) throws IOException { g.writeNumber(getter.applyAsDouble(o)); }
+            });
+            return this;
+        }
+
+        public Builder<T> integer(String name, ToIntFunction<T> getter) {
+            fields.add(new Field<T>(name) {
+                boolean differs(T a, T b) { return getter.applyAsInt(a) != getter.applyAsInt(b); }
+                void write(T o, JsonGenerator g) throws IOException { g.writeNumber(getter.applyAsInt(o)); }
+            });
+            return this;
+        }
+
+        public Builder<T> longInteger(String name, ToLongFunction<T> getter) {
+            fields.add(new Field<T>(name) {
+                boolean differs(T a, T b) { return getter.applyAsLong(a) != getter.applyAsLong(b); }
+                void write(T o, JsonGenerator g) throws IOException { g.writeNumber(getter.applyAsLong(o)); }
+            });
+            return this;
+        }
+
+        /** Any other value (wrappers, enums, dates), compared with equals and written by the mapper. */
+        public Builder<T> value(String name, Function<T, ?> getter) {
+            fields.add(new Field<T>(name) {
+                boolean differs(T a, T b) { return !Objects.equals(getter.apply(a), getter.apply(b)); }
+                void write(T o, JsonGenerator g) throws IOException { g.writeObject(getter.apply(o)); }
+            });
+            return this;
+        }
+
+        public ChangeSetDiff<T> build(ObjectMapper mapper) {
+            return new ChangeSetDiff<>(fields, mapper);
+        }
+    }
+
+    private abstract static class Field<T> {
+        final SerializedString name;
+
+        Field(String name) {
+            this.name = new SerializedString(name);
+        }
+
+        abstract boolean differs(T a, T b);
+
+        abstract void write(T o, JsonGenerator g) throws IOException;
+    }
+
+    private static final class Buffer {
+        final CharArrayWriter out = new CharArrayWriter(256);
+        final JsonGenerator gen;
+
+        Buffer(JsonFactory factory) {
+            try {
+                gen = factory.createGenerator(out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            // One root object per diff, back to back on the same generator
+            gen.setRootValueSeparator(null);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.bfs.hibernateprojectdemo.util;
+
+/**
+ * Count-Min sketch over long keys with non-negative weights.
+ *
+ * {@link #estimate(long)} never underestimates, and with probability at least {@code 1 - delta}
+ * overestimates by at most {@code epsilon * total}. Memory is {@code ceil(e / epsilon) *
+ * ceil(ln(1 / delta))} counters, independent of how many distinct keys are added. Not thread-safe.
+ */
+public final class CountMinSketch {
+
+    private final double epsilon;
+    private final double delta;
+    private final int width;
+    private final long[][] rows;
+    private final long[] seeds;
+    private long total;
+
+    public CountMinSketch(double epsilon, double delta) {
+        if (!(epsilon > 0 && epsilon < 1) || !(delta > 0 && delta < 1)) {
+            throw new IllegalArgumentException("epsilon and delta must be in (0, 1)");
+        }
+        this.epsilon = epsilon;
+        this.delta = delta;
+        this.width = (int) Math.ceil(Math.E / epsilon);
+        int depth = (int) Math.ceil(Math.log(1 / delta));
+        this.rows = new long[depth][width];
+        this.seeds = new long[depth];
+        for (int i = 0; i < depth; i++) {
+            seeds[i] = mix(0x9E3779B97F4A7C15L * (i + 1));
+        }
+    }
+
+    public void add(long key, long weight) {
+        if (weight < 0) throw new IllegalArgumentException("weight must be >= 0");
+        for (int i = 0; i < rows.length; i++) {
+            rows[i][index(key, i)] += weight;
+        }
+        total += weight;
+    }
+
+    public long estimate(long key) {
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < rows.length; i++) {
+            min = Math.min(min, rows[i][index(key, i)]);
+        }
+        return min;
+    }
+
+    /** Additive error that holds with probability {@link #getConfidence()}. */
+    public long errorBound() {
+        return (long) Math.ceil(epsilon * total);
+    }
+
+    public double getConfidence() {
+        return 1 - delta;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    private int index(long key, int row) {
+        return (int) Long.remainderUnsigned(mix(key ^ seeds[row]), width);
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,47 @@
+package com.bfs.hibernateprojectdemo.util;
+
+import org.hibernate.exception.ConstraintViolationException;
+
+import java.sql.SQLException;
+import java.util.Locale;
+
+/**
+ * Tells a duplicate key from other constraint violations (NOT NULL, foreign keys), so only the
+ * expected lost race on a unique key is answered as such and everything else stays a failure.
+ */
+public final class DuplicateKeys {
+
+    private static final int MYSQL_DUPLICATE_ENTRY = 1062;
+
+    private DuplicateKeys() {
+    }
+
+    /** @return the first ConstraintViolationException in the cause chain if it is a duplicate key, else null */
+    public static ConstraintViolationException find(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof ConstraintViolationException) {
+                ConstraintViolationException cve = (ConstraintViolationException) t;
+                return isDuplicateEntry(cve.getSQLException()) ? cve : null;
+            }
+        }
+        return null;
+    }
+
+    /** True for a duplicate on the named unique constraint, however the driver qualifies its name. */
+    public static boolean isDuplicateOn(Throwable e, String constraint) {
+        ConstraintViolationException cve = find(e);
+        if (cve == null) return false;
+        String key = constraint.toLowerCase(Locale.ROOT);
+        // MySQL names "table.key"; H2 adds a schema and an index suffix and repeats it in the message
+        return lower(cve.getConstraintName()).contains(key) || lower(cve.getSQLException().getMessage()).contains(key);
+    }
+
+    private static String lower(String s) {
+        return s == null ? "" : s.toLowerCase(Locale.ROOT);
+    }
+
+    // MySQL reports SQLState 23000 with vendor code 1062; H2 and standard drivers use 23505
+    private static boolean isDuplicateEntry(SQLException e) {
+        return e != null && (e.getErrorCode() == MYSQL_DUPLICATE_ENTRY || "23505".equals(e.getSQLState()));
+    }
+}
@@ -0,0 +1,41 @@
+package com.bfs.hibernateprojectdemo.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Opaque keyset position for listings sorted by (time desc, id desc), such as orders by orderTime
+ * and audit entries by timestamp. The token is the last row's time and id, base64url-encoded.
+ */
+public final class KeysetCursor {
+
+    private final LocalDateTime time;
+    private final long id;
+
+    public KeysetCursor(LocalDateTime time, long id) {
+        this.time = time;
+        this.id = id;
+    }
+
+    public LocalDateTime getTime() { return time; }
+    public long getId() { return id; }
+
+    public String encode() {
+        String raw = time + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** @throws IllegalArgumentException if the token was not produced by {@link #encode()} */
+    public static KeysetCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int sep = raw.lastIndexOf('|');
+            if (sep < 0) throw new IllegalArgumentException("Invalid cursor");
+            return new KeysetCursor(LocalDateTime.parse(raw.substring(0, sep)), Long.parseLong(raw.substring(sep + 1)));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
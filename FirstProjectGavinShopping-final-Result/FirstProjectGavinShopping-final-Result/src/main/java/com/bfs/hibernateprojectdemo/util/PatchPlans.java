@@ -0,0 +1,361 @@
+package com.bfs.hibernateprojectdemo.util;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.introspect.AnnotatedConstructor;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Applies JSON Patch and Merge Patch documents straight onto a copy of the target, without the
+ * valueToTree / apply / treeToValue round trip.
+ *
+ * A patch is compiled into one typed operation per top-level property and the plan is cached per
+ * class by the patch's shape (ops and paths, or member names), not its values. Only what provably
+ * matches the tree round trip is compiled: plain classes whose every property is a scalar with a
+ * getter and a mutator, no Jackson annotations, and null-inclusive serialization; single-segment
+ * add/replace/remove/test ops, none after a remove of the same property, and scalar merge members;
+ * values of the property's own JSON type.
+ * Everything else, including a failed test op, returns null so PatchUtils falls back to the tree.
+ */
+final class PatchPlans {
+
+    private static final int MAX_PLANS_PER_CLASS = 256;
+
+    private final ObjectMapper mapper;
+    private final Map<Class<?>, Schema> schemas = new ConcurrentHashMap<>();
+
+    PatchPlans(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    boolean supports(Class<?> type) {
+        return schema(type) != Schema.UNSUPPORTED;
+    }
+
+    /** @return a patched copy of {@code target}, or null if the tree path must handle this patch */
+    <T> T applyJsonPatch(JsonNode patch, T target, Class<T> type) {
+        Schema schema = schema(type);
+        if (schema == Schema.UNSUPPORTED || !patch.isArray()) return null;
+        StringBuilder shape = new StringBuilder("P");
+        for (JsonNode op : patch) {
+            JsonNode name = op.get("op");
+            JsonNode path = op.get("path");
+            if (name == null || !name.isTextual() || path == null || !path.isTextual()) return null;
+            key(key(shape, name.textValue()), path.textValue()).append(op.size());
+        }
+        Plan plan = schema.plans.get(shape.toString(), k -> schema.compileJsonPatch(patch));
+        return plan == Plan.UNSUPPORTED ? null : type.cast(plan.apply(schema, target, patch, true));
+    }
+
+    /** @return a patched copy of {@code target}, or null if the tree path must handle this patch */
+    <T> T applyMergePatch(JsonNode patch, T target, Class<T> type) {
+        Schema schema = schema(type);
+        if (schema == Schema.UNSUPPORTED || !patch.isObject()) return null;
+        StringBuilder shape = new StringBuilder("M");
+        for (Iterator<Map.Entry<String, JsonNode>> it = patch.fields(); it.hasNext(); ) {
+            Map.Entry<String, JsonNode> member = it.next();
+            JsonNode value = member.getValue();
+            // Nested objects merge recursively; no plan covers them
+            if (value.isContainerNode()) return null;
+            key(shape, member.getKey()).append(value.isNull() ? '-' : '=');
+        }
+        Plan plan = schema.plans.get(shape.toString(), k -> schema.compileMergePatch(patch));
+        return plan == Plan.UNSUPPORTED ? null : type.cast(plan.apply(schema, target, patch, false));
+    }
+
+    // Length-prefixed, so no two shapes share a key whatever the names contain
+    private static StringBuilder key(StringBuilder shape, String s) {
+        return shape.append(s.length()).append(':').append(s);
+    }
+
+    private Schema schema(Class<?> type) {
+        return schemas.computeIfAbsent(type, this::introspect);
+    }
+
+    private Schema introspect(Class<?> type) {
+        if (mapper.mixInCount() > 0 || type.isInterface() || Modifier.isAbstract(type.getModifiers())
+                || (type.getEnclosingClass() != null && !Modifier.isStatic(type.getModifiers()))) {
+            return Schema.UNSUPPORTED;
+        }
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            if (hasJacksonAnnotation(c)) return Schema.UNSUPPORTED;
+        }
+        SerializationConfig config = mapper.getSerializationConfig();
+        // valueToTree must emit every property, nulls included, for add/replace/remove to line up
+        if (!includesNulls(config.getDefaultPropertyInclusion(type))) return Schema.UNSUPPORTED;
+        BeanDescription read = config.introspect(mapper.constructType(type));
+        BeanDescription write = mapper.getDeserializationConfig().introspect(mapper.constructType(type));
+        AnnotatedConstructor ctor = write.findDefaultConstructor();
+        if (ctor == null) return Schema.UNSUPPORTED;
+
+        Map<String, AnnotatedMember> mutators = new HashMap<>();
+        for (BeanPropertyDefinition prop : write.findProperties()) {
+            if (prop.getMutator() != null) mutators.put(prop.getName(), prop.getMutator());
+        }
+        List<BeanPropertyDefinition> readable = read.findProperties();
+        if (readable.size() != mutators.size()) return Schema.UNSUPPORTED;
+
+        try {
+            ctor.fixAccess(true);
+            Object prototype = ctor.call();
+            Map<String, Property> properties = new HashMap<>();
+            for (BeanPropertyDefinition prop : readable) {
+                AnnotatedMember accessor = prop.getAccessor();
+                AnnotatedMember mutator = mutators.get(prop.getName());
+                Class<?> raw = prop.getRawPrimaryType();
+                Kind kind = Kind.of(raw);
+                if (accessor == null || mutator == null || kind == null
+                        || hasJacksonAnnotation(accessor.getAnnotated()) || hasJacksonAnnotation(mutator.getAnnotated())
+                        || (prop.getField() != null && hasJacksonAnnotation(prop.getField().getAnnotated()))
+                        || !includesNulls(config.getDefaultPropertyInclusion(raw))) {
+                    return Schema.UNSUPPORTED;
+                }
+                accessor.fixAccess(true);
+                mutator.fixAccess(true);
+                properties.put(prop.getName(), new Property(kind, raw.isPrimitive(), accessor, mutator,
+                        accessor.getValue(prototype)));
+            }
+            return new Schema(ctor, properties.values().toArray(new Property[0]), properties);
+        } catch (Exception e) {
+            return Schema.UNSUPPORTED;
+        }
+    }
+
+    private static boolean includesNulls(JsonInclude.Value inclusion) {
+        JsonInclude.Include value = inclusion.getValueInclusion();
+        return value == JsonInclude.Include.ALWAYS || value == JsonInclude.Include.USE_DEFAULTS;
+    }
+
+    private static boolean hasJacksonAnnotation(AnnotatedElement element) {
+        for (Annotation a : element.getAnnotations()) {
+            if (a.annotationType().getName().startsWith("com.fasterxml.jackson.")) return true;
+        }
+        return false;
+    }
+
+    private enum Kind {
+        STRING, BOOLEAN, INT, LONG, DOUBLE;
+
+        static Kind of(Class<?> raw) {
+            if (raw == String.class) return STRING;
+            if (raw == boolean.class || raw == Boolean.class) return BOOLEAN;
+            if (raw == int.class || raw == Integer.class) return INT;
+            if (raw == long.class || raw == Long.class) return LONG;
+            if (raw == double.class || raw == Double.class) return DOUBLE;
+            return null;
+        }
+    }
+
+    private static final class Property {
+        final Kind kind;
+        final boolean primitive;
+        final AnnotatedMember accessor;
+        final AnnotatedMember mutator;
+        // What a property missing from the tree deserializes to
+        final Object defaultValue;
+
+        Property(Kind kind, boolean primitive, AnnotatedMember accessor, AnnotatedMember mutator, Object defaultValue) {
+            this.kind = kind;
+            this.primitive = primitive;
+            this.accessor = accessor;
+            this.mutator = mutator;
+            this.defaultValue = defaultValue;
+        }
+
+        /** @return false if the value is not exactly what treeToValue would accept without coercion */
+        boolean set(Object target, JsonNode v) {
+            Object value;
+            if (v == null) {
+                return false;
+            } else if (v.isNull()) {
+                // treeToValue turns null into 0/false unless told to fail; leave that call to it
+                if (primitive) return false;
+                value = null;
+            } else {
+                switch (kind) {
+                    case STRING:
+                        if (!v.isTextual()) return false;
+                        value = v.textValue();
+                        break;
+                    case BOOLEAN:
+                        if (!v.isBoolean()) return false;
+                        value = v.booleanValue();
+                        break;
+                    case INT:
+                        if (!v.isIntegralNumber() || !v.canConvertToInt()) return false;
+                        value = v.intValue();
+                        break;
+                    case LONG:
+                        if (!v.isIntegralNumber() || !v.canConvertToLong()) return false;
+                        value = v.longValue();
+                        break;
+                    default:
+                        if (!v.isNumber()) return false;
+                        value = v.doubleValue();
+                }
+            }
+            mutator.setValue(target, value);
+            return true;
+        }
+
+        /** JSON Patch "test" as the tree path evaluates it, numbers compared by value */
+        boolean matches(Object target, JsonNode expected) {
+            Object current = accessor.getValue(target);
+            if (expected == null) return false;
+            if (current == null || expected.isNull()) return current == null && expected.isNull();
+            switch (kind) {
+                case STRING:
+                    return expected.isTextual() && expected.textValue().equals(current);
+                case BOOLEAN:
+                    return expected.isBoolean() && expected.booleanValue() == (Boolean) current;
+                case INT:
+                case LONG:
+                    long n = ((Number) current).longValue();
+                    if (!expected.isNumber()) return false;
+                    if (expected.isIntegralNumber()) return expected.canConvertToLong() && expected.longValue() == n;
+                    return expected.decimalValue().compareTo(BigDecimal.valueOf(n)) == 0;
+                default:
+                    double d = (Double) current;
+                    return expected.isNumber() && Double.isFinite(d)
+                            && expected.decimalValue().compareTo(BigDecimal.valueOf(d)) == 0;
+            }
+        }
+    }
+
+    private static final class Schema {
+        static final Schema UNSUPPORTED = new Schema(null, new Property[0], Map.of());
+
+        final AnnotatedConstructor ctor;
+        final Property[] all;
+        final Map<String, Property> byName;
+        final Cache<String, Plan> plans = Caffeine.newBuilder().maximumSize(MAX_PLANS_PER_CLASS).build();
+
+        Schema(AnnotatedConstructor ctor, Property[] all, Map<String, Property> byName) {
+            this.ctor = ctor;
+            this.all = all;
+            this.byName = byName;
+        }
+
+        // Same result as treeToValue(valueToTree(target)) for the classes introspect admits
+        Object copy(Object target) throws Exception {
+            Object copy = ctor.call();
+            for (Property p : all) p.mutator.setValue(copy, p.accessor.getValue(target));
+            return copy;
+        }
+
+        Plan compileJsonPatch(JsonNode patch) {
+            Op[] ops = new Op[patch.size()];
+            Set<Property> removed = new HashSet<>();
+            for (int i = 0; i < ops.length; i++) {
+                JsonNode op = patch.get(i);
+                String path = op.get("path").textValue();
+                // One segment only: "/name", with ~1 and ~0 unescaped
+                if (!path.startsWith("/") || path.indexOf('/', 1) >= 0) return Plan.UNSUPPORTED;
+                Property p = byName.get(path.substring(1).replace("~1", "/").replace("~0", "~"));
+                // A removed member is absent in the tree, so replace, test or remove of it must fail there
+                if (p == null || removed.contains(p)) return Plan.UNSUPPORTED;
+                switch (op.get("op").textValue()) {
+                    case "add":
+                    case "replace":
+                        if (op.size() != 3 || !op.has("value")) return Plan.UNSUPPORTED;
+                        ops[i] = new Op(Op.SET, p, null);
+                        break;
+                    case "test":
+                        if (op.size() != 3 || !op.has("value")) return Plan.UNSUPPORTED;
+                        ops[i] = new Op(Op.TEST, p, null);
+                        break;
+                    case "remove":
+                        if (op.size() != 2) return Plan.UNSUPPORTED;
+                        ops[i] = new Op(Op.REMOVE, p, null);
+                        removed.add(p);
+                        break;
+                    default:
+                        return Plan.UNSUPPORTED;
+                }
+            }
+            return new Plan(ops);
+        }
+
+        Plan compileMergePatch(JsonNode patch) {
+            Op[] ops = new Op[patch.size()];
+            int i = 0;
+            for (Iterator<Map.Entry<String, JsonNode>> it = patch.fields(); it.hasNext(); i++) {
+                Map.Entry<String, JsonNode> member = it.next();
+                Property p = byName.get(member.getKey());
+                if (p == null) return Plan.UNSUPPORTED;
+                // A null member deletes the property, which the tree path reads back as its default
+                ops[i] = new Op(member.getValue().isNull() ? Op.REMOVE : Op.SET, p, member.getKey());
+            }
+            return new Plan(ops);
+        }
+    }
+
+    private static final class Op {
+        static final int SET = 0;
+        static final int REMOVE = 1;
+        static final int TEST = 2;
+
+        final int kind;
+        final Property property;
+        // Merge patch member name; JSON Patch ops read "value" from the op at the same index
+        final String member;
+
+        Op(int kind, Property property, String member) {
+            this.kind = kind;
+            this.property = property;
+            this.member = member;
+        }
+    }
+
+    private static final class Plan {
+        static final Plan UNSUPPORTED = new Plan(new Op[0]);
+
+        final Op[] ops;
+
+        Plan(Op[] ops) {
+            this.ops = ops;
+        }
+
+        Object apply(Schema schema, Object target, JsonNode patch, boolean jsonPatch) {
+            Object copy;
+            try {
+                copy = schema.copy(target);
+            } catch (Exception e) {
+                return null;
+            }
+            for (int i = 0; i < ops.length; i++) {
+                Op op = ops[i];
+                JsonNode value = jsonPatch ? patch.get(i).get("value") : patch.get(op.member);
+                switch (op.kind) {
+                    case Op.SET:
+                        if (!op.property.set(copy, value)) return null;
+                        break;
+                    case Op.REMOVE:
+                        op.property.mutator.setValue(copy, op.property.defaultValue);
+                        break;
+                    default:
+                        if (!op.property.matches(copy, value)) return null;
+                }
+            }
+            return copy;
+        }
+    }
+}
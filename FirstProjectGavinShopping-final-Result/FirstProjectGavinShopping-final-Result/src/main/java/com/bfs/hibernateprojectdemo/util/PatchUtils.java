@@ -3,25 +3,53 @@ package com.bfs.hibernateprojectdemo.util;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.fge.jsonpatch.JsonPatch;
-import com.github.fge.jsonpatch.JsonPatchException;
 import com.github.fge.jsonpatch.mergepatch.JsonMergePatch;
 
+/**
+ * Applies JSON Patch / Merge Patch documents and returns a patched copy; the target is left as is.
+ * Patches PatchPlans can compile run directly against the fields; anything else goes through a
+ * JsonNode tree. Both give the same result. Keep one instance per mapper so compiled plans are reused.
+ */
 public class PatchUtils {
     private final ObjectMapper mapper;
+    private final PatchPlans plans;
 
     public PatchUtils(ObjectMapper mapper) {
         this.mapper = mapper;
+        this.plans = new PatchPlans(mapper);
     }
 
     public <T> T applyJsonPatch(JsonPatch patch, T target, Class<T> targetClass) throws Exception {
+        T out = plans.applyJsonPatch(mapper.valueToTree(patch), target, targetClass);
+        return out != null ? out : applyTree(patch, target, targetClass);
+    }
+
+    /** Same as {@link #applyJsonPatch(JsonPatch, Object, Class)} for a patch still in tree form. */
+    public <T> T applyJsonPatch(JsonNode patch, T target, Class<T> targetClass) throws Exception {
+        T out = plans.applyJsonPatch(patch, target, targetClass);
+        return out != null ? out : applyTree(JsonPatch.fromJson(patch), target, targetClass);
+    }
+
+    public <T> T applyMergePatch(JsonMergePatch patch, T target, Class<T> targetClass) throws Exception {
+        T out = plans.applyMergePatch(mapper.valueToTree(patch), target, targetClass);
+        return out != null ? out : applyTree(patch, target, targetClass);
+    }
+
+    /** Same as {@link #applyMergePatch(JsonMergePatch, Object, Class)} for a patch still in tree form. */
+    public <T> T applyMergePatch(JsonNode patch, T target, Class<T> targetClass) throws Exception {
+        T out = plans.applyMergePatch(patch, target, targetClass);
+        return out != null ? out : applyTree(JsonMergePatch.fromJson(patch), target, targetClass);
+    }
+
+    private <T> T applyTree(JsonPatch patch, T target, Class<T> targetClass) throws Exception {
         JsonNode targetNode = mapper.valueToTree(target);
         JsonNode patched = patch.apply(targetNode);
         return mapper.treeToValue(patched, targetClass);
     }
 
-    public <T> T applyMergePatch(JsonMergePatch patch, T target, Class<T> targetClass) throws Exception {
+    private <T> T applyTree(JsonMergePatch patch, T target, Class<T> targetClass) throws Exception {
         JsonNode targetNode = mapper.valueToTree(target);
         JsonNode patched = patch.apply(targetNode);
         return mapper.treeToValue(patched, targetClass);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,112 @@
+package com.bfs.hibernateprojectdemo.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Weighted Space-Saving summary: tracks at most {@code capacity} keys and their approximate totals.
+ *
+ * A monitored key's true total lies in {@code [count - error, count]}. Any key whose true total
+ * exceeds {@code total / capacity} is guaranteed to be monitored. When full, a new key replaces the
+ * key with the smallest count and inherits that count as its error. Not thread-safe.
+ */
+public final class SpaceSaving<K> {
+
+    private static final Comparator<Counter<?>> BY_COUNT = Comparator
+            .comparingLong((Counter<?> c) -> c.count)
+            .thenComparingLong(c -> c.seq);
+
+    private final int capacity;
+    private final Map<K, Counter<K>> counters = new HashMap<>();
+    private final TreeSet<Counter<K>> byCount = new TreeSet<>(BY_COUNT);
+    private long total;
+    private long nextSeq;
+
+    public SpaceSaving(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be >= 1");
+        this.capacity = capacity;
+    }
+
+    /**
+     * Adds {@code weight} to {@code key}.
+     *
+     * @return the key evicted to make room, or null
+     */
+    public K offer(K key, long weight) {
+        if (weight < 0) throw new IllegalArgumentException("weight must be >= 0");
+        total += weight;
+        Counter<K> c = counters.get(key);
+        if (c != null) {
+            byCount.remove(c);
+            c.count += weight;
+            byCount.add(c);
+            return null;
+        }
+        K evicted = null;
+        long floor = 0;
+        if (counters.size() == capacity) {
+            Counter<K> min = byCount.pollFirst();
+            counters.remove(min.key);
+            evicted = min.key;
+            floor = min.count;
+        }
+        c = new Counter<>(key, floor + weight, floor, nextSeq++);
+        counters.put(key, c);
+        byCount.add(c);
+        return evicted;
+    }
+
+    public boolean contains(K key) {
+        return counters.containsKey(key);
+    }
+
+    /** The {@code n} monitored keys with the largest counts, largest first. */
+    public List<Counter<K>> top(int n) {
+        List<Counter<K>> out = new ArrayList<>(Math.min(n, counters.size()));
+        Iterator<Counter<K>> it = byCount.descendingIterator();
+        while (it.hasNext() && out.size() < n) {
+            out.add(it.next().copy());
+        }
+        return out;
+    }
+
+    /** Largest possible overestimate of any monitored count. */
+    public long errorBound() {
+        return total / capacity;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public static final class Counter<K> {
+        private final K key;
+        private long count;
+        private final long error;
+        private final long seq;
+
+        private Counter(K key, long count, long error, long seq) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+            this.seq = seq;
+        }
+
+        private Counter<K> copy() {
+            return new Counter<>(key, count, error, seq);
+        }
+
+        public K getKey() { return key; }
+        public long getCount() { return count; }
+        public long getError() { return error; }
+    }
+}
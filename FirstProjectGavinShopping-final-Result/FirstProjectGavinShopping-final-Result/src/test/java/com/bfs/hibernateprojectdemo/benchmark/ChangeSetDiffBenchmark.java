@@ -0,0 +1,118 @@
+package com.bfs.hibernateprojectdemo.benchmark;
+
+import com.bfs.hibernateprojectdemo.domain.Product;
+import com.bfs.hibernateprojectdemo.util.ChangeSetDiff;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building a product PATCH change set.
+ *
+ * engine is ChangeSetDiff as wired in ProductController; stringBuilder reproduces the previous
+ * appendChange/toJsonValue code. changed is how many of the five fields differ (0 = no-op PATCH).
+ * Run with -prof gc to compare allocation per op.
+ *
+ * mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ *     "-Dexec.args=-cp %classpath com.bfs.hibernateprojectdemo.benchmark.ChangeSetDiffBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChangeSetDiffBenchmark {
+
+    @Param({"0", "1", "5"})
+    public int changed;
+
+    private ChangeSetDiff<Product> engine;
+    private Product before;
+    private Product after;
+
+    @Setup
+    public void setUp() {
+        engine = ChangeSetDiff.builder(Product.class)
+                .text("name", Product::getName)
+                .text("description", Product::getDescription)
+                .decimal("retailPrice", Product::getRetailPrice)
+                .decimal("wholesalePrice", Product::getWholesalePrice)
+                .integer("quantity", Product::getQuantity)
+                .build(new ObjectMapper());
+        before = product("Walnut desk lamp", "Warm \"2700K\" LED, 40cm arm", 49.99, 31.5, 120);
+        after = product("Walnut desk lamp", "Warm \"2700K\" LED, 40cm arm", 49.99, 31.5, 120);
+        if (changed >= 1) after.setQuantity(119);
+        if (changed >= 5) {
+            after.setName("Walnut desk lamp II");
+            after.setDescription("Warm \"3000K\" LED, 45cm arm");
+            after.setRetailPrice(54.99);
+            after.setWholesalePrice(33.25);
+        }
+    }
+
+    private static Product product(String name, String description, double retail, double wholesale, int qty) {
+        Product p = new Product();
+        p.setName(name);
+        p.setDescription(description);
+        p.setRetailPrice(retail);
+        p.setWholesalePrice(wholesale);
+        p.setQuantity(qty);
+        return p;
+    }
+
+    @Benchmark
+    public String engine() {
+        return engine.diff(before, after);
+    }
+
+    @Benchmark
+    public String stringBuilder() {
+        StringBuilder csb = new StringBuilder("{");
+        boolean first = true;
+        first = appendChange(csb, first, "name", before.getName(), after.getName());
+        first = appendChange(csb, first, "description", before.getDescription(), after.getDescription());
+        first = appendChange(csb, first, "retailPrice", before.getRetailPrice(), after.getRetailPrice());
+        first = appendChange(csb, first, "wholesalePrice", before.getWholesalePrice(), after.getWholesalePrice());
+        appendChange(csb, first, "quantity", before.getQuantity(), after.getQuantity());
+        return csb.append("}").toString();
+    }
+
+    private static String toJsonValue(Object v) {
+        if (v == null) return "null";
+        if (v instanceof Number) return v.toString();
+        return "\"" + v.toString().replace("\"", "\\\"") + "\"";
+    }
+
+    private static boolean appendChange(StringBuilder csb, boolean first, String field, Object from, Object to) {
+        if (!Objects.equals(from, to)) {
+            if (!first) csb.append(",");
+            csb.append("\"").append(field).append("\":{")
+                    .append("\"from\":").append(toJsonValue(from)).append(",")
+                    .append("\"to\":").append(toJsonValue(to)).append("}");
+            return false;
+        }
+        return first;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ChangeSetDiffBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,101 @@
+package com.bfs.hibernateprojectdemo.benchmark;
+
+import com.bfs.hibernateprojectdemo.security.AuthenticatedUser;
+import com.bfs.hibernateprojectdemo.security.JwtService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.security.Key;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token verification throughput across a pool of distinct live tokens.
+ *
+ * verify goes through JwtService.parseToken with the verified-token cache on (cacheSize > 0) or off
+ * (0, one parse with the shared key and parser). perRequestParser reproduces the previous code path:
+ * key and parser rebuilt per call, and the token parsed twice (subject, then expiration).
+ *
+ * mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ *     "-Dexec.args=-cp %classpath com.bfs.hibernateprojectdemo.benchmark.JwtVerifyBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class JwtVerifyBenchmark {
+
+    private static final String SECRET_KEY = "123456789012345678901234567890fdafdfagfagasdfgaserwqtvb";
+
+    @Param({"0", "10000"})
+    public long cacheSize;
+
+    @Param({"1000"})
+    public int tokenCount;
+
+    private JwtService jwtService;
+    private String[] tokens;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup
+    public void setUp() {
+        jwtService = new JwtService(cacheSize);
+        tokens = new String[tokenCount];
+        for (int i = 0; i < tokenCount; i++) {
+            tokens[i] = jwtService.generateToken(new AuthenticatedUser((long) i, "user-" + i, null, "USER"));
+        }
+    }
+
+    private String nextToken(Cursor cursor) {
+        String token = tokens[cursor.next];
+        cursor.next = (cursor.next + 1) % tokens.length;
+        return token;
+    }
+
+    @Benchmark
+    public AuthenticatedUser verify(Cursor cursor) {
+        return jwtService.parseToken(nextToken(cursor));
+    }
+
+    @Benchmark
+    public boolean perRequestParser(Cursor cursor) {
+        String token = nextToken(cursor);
+        String subject = claims(token).getSubject();
+        Date expiration = claims(token).getExpiration();
+        return subject != null && expiration.after(new Date());
+    }
+
+    private static Claims claims(String token) {
+        Key key = Keys.hmacShaKeyFor(SECRET_KEY.getBytes());
+        return Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtVerifyBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,147 @@
+package com.bfs.hibernateprojectdemo.benchmark;
+
+import com.bfs.hibernateprojectdemo.domain.Order;
+import com.bfs.hibernateprojectdemo.domain.OrderLine;
+import com.bfs.hibernateprojectdemo.domain.User;
+import com.bfs.hibernateprojectdemo.security.AuthenticatedUser;
+import com.bfs.hibernateprojectdemo.security.DbUserDetailsService;
+import com.bfs.hibernateprojectdemo.security.JwtService;
+import com.bfs.hibernateprojectdemo.security.PasswordVerifier;
+import com.bfs.hibernateprojectdemo.service.LoginService;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.cfg.Configuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Successful-login throughput under concurrent load, from username/password to signed token.
+ *
+ * login is the current path: one user lookup, password check, token from that user.
+ * twoLookups reproduces the previous one: lookup and check, then a second lookup through
+ * DbUserDetailsService before minting the token. BCrypt cost 10 (the app default) dominates both;
+ * cost 4 makes the lookup difference visible. Defaults to in-memory H2 without the second-level
+ * cache; point it at MySQL with -Dbench.url, -Dbench.user, -Dbench.password and -Dbench.dialect.
+ *
+ * mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ *     "-Dexec.args=-cp %classpath com.bfs.hibernateprojectdemo.benchmark.LoginBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class LoginBenchmark {
+
+    private static final String PASSWORD = "secret";
+
+    @Param({"4", "10"})
+    public int bcryptStrength;
+
+    @Param({"100"})
+    public int userCount;
+
+    private SessionFactory sessionFactory;
+    private PasswordVerifier passwordVerifier;
+    private LoginService loginService;
+    private DbUserDetailsService userDetailsService;
+    private JwtService jwtService;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Configuration cfg = new Configuration()
+                .addAnnotatedClass(Order.class)
+                .addAnnotatedClass(OrderLine.class)
+                .addAnnotatedClass(User.class)
+                .setProperty("hibernate.connection.url", System.getProperty("bench.url",
+                        "jdbc:h2:mem:login-" + bcryptStrength + ";MODE=MySQL;DB_CLOSE_DELAY=-1"))
+                .setProperty("hibernate.connection.username", System.getProperty("bench.user", "sa"))
+                .setProperty("hibernate.connection.password", System.getProperty("bench.password", ""))
+                .setProperty("hibernate.dialect", System.getProperty("bench.dialect", "org.hibernate.dialect.H2Dialect"))
+                .setProperty("hibernate.hbm2ddl.auto", "create")
+                .setProperty("hibernate.show_sql", "false")
+                .setProperty("hibernate.cache.use_second_level_cache", "false");
+        sessionFactory = cfg.buildSessionFactory();
+
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(bcryptStrength);
+        String hash = encoder.encode(PASSWORD);
+        try (Session s = sessionFactory.openSession()) {
+            Transaction tx = s.beginTransaction();
+            for (int i = 0; i < userCount; i++) {
+                User user = new User();
+                user.setUsername("bench-" + i);
+                user.setEmail(user.getUsername() + "@shop.com");
+                user.setPassword(hash);
+                s.persist(user);
+            }
+            tx.commit();
+        }
+
+        passwordVerifier = new PasswordVerifier(encoder, 4, 1024, TimeUnit.MINUTES.toMillis(1));
+        loginService = new LoginService(sessionFactory, passwordVerifier);
+        userDetailsService = new DbUserDetailsService(sessionFactory);
+        jwtService = new JwtService(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        passwordVerifier.shutdown();
+        sessionFactory.close();
+    }
+
+    private String nextUsername(Cursor cursor) {
+        cursor.next = (cursor.next + 1) % userCount;
+        return "bench-" + cursor.next;
+    }
+
+    @Benchmark
+    public String login(Cursor cursor) {
+        AuthenticatedUser principal = loginService.authenticate(nextUsername(cursor), PASSWORD);
+        return jwtService.generateToken(principal);
+    }
+
+    @Benchmark
+    public String twoLookups(Cursor cursor) {
+        String username = nextUsername(cursor);
+        User dbUser;
+        try (Session session = sessionFactory.openSession()) {
+            dbUser = session.bySimpleNaturalId(User.class).load(username);
+        }
+        if (!passwordVerifier.matches(PASSWORD, dbUser.getPassword())) throw new IllegalStateException();
+        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+        return jwtService.generateToken(userDetails);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(LoginBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,134 @@
+package com.bfs.hibernateprojectdemo.benchmark;
+
+import com.bfs.hibernateprojectdemo.domain.Order;
+import com.bfs.hibernateprojectdemo.domain.OrderLine;
+import com.bfs.hibernateprojectdemo.domain.User;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.cfg.Configuration;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Order persistence throughput for 1/10/100-line baskets, with and without JDBC batching.
+ *
+ * Uses the same Hibernate settings HibernateConfig applies. Defaults to in-memory H2, which has no
+ * network round trip and so mostly measures Hibernate overhead; point it at MySQL with
+ * -Dbench.url, -Dbench.user, -Dbench.password and -Dbench.dialect to see the batching gain.
+ * The "inserts" secondary result is order lines written per second.
+ *
+ * mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ *     "-Dexec.args=-cp %classpath com.bfs.hibernateprojectdemo.benchmark.OrderInsertBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderInsertBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int basketSize;
+
+    @Param({"1", "50"})
+    public String batchSize;
+
+    private SessionFactory sessionFactory;
+    private Long userId;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Inserts {
+        public long inserts;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            inserts = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Configuration cfg = new Configuration()
+                .addAnnotatedClass(Order.class)
+                .addAnnotatedClass(OrderLine.class)
+                .addAnnotatedClass(User.class)
+                .setProperty("hibernate.connection.url", System.getProperty("bench.url",
+                        "jdbc:h2:mem:orders-" + basketSize + "-" + batchSize + ";MODE=MySQL;DB_CLOSE_DELAY=-1"))
+                .setProperty("hibernate.connection.username", System.getProperty("bench.user", "sa"))
+                .setProperty("hibernate.connection.password", System.getProperty("bench.password", ""))
+                .setProperty("hibernate.dialect", System.getProperty("bench.dialect", "org.hibernate.dialect.H2Dialect"))
+                .setProperty("hibernate.hbm2ddl.auto", "create")
+                .setProperty("hibernate.show_sql", "false")
+                .setProperty("hibernate.jdbc.batch_size", batchSize)
+                .setProperty("hibernate.order_inserts", "true")
+                .setProperty("hibernate.order_updates", "true");
+        sessionFactory = cfg.buildSessionFactory();
+
+        try (Session s = sessionFactory.openSession()) {
+            Transaction tx = s.beginTransaction();
+            User user = new User();
+            user.setUsername("bench-" + System.nanoTime());
+            user.setEmail(user.getUsername() + "@shop.com");
+            user.setPassword("x");
+            s.persist(user);
+            tx.commit();
+            userId = user.getId();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public void placeBasket(Inserts counter) {
+        try (Session s = sessionFactory.openSession()) {
+            Transaction tx = s.beginTransaction();
+            Order o = new Order();
+            o.setUserId(userId);
+            o.setStatus("Processing");
+            o.setOrderTime(LocalDateTime.now());
+            for (int i = 0; i < basketSize; i++) {
+                OrderLine line = new OrderLine();
+                line.setProductId((long) i);
+                line.setQuantity(1);
+                line.setRetailPriceAtPurchase(10.0);
+                line.setWholesalePriceAtPurchase(6.0);
+                line.setProductNameAtPurchase("product-" + i);
+                line.setProductDescriptionAtPurchase("benchmark product");
+                o.addLine(line);
+            }
+            s.save(o);
+            tx.commit();
+        }
+        counter.inserts += basketSize;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(OrderInsertBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,91 @@
+package com.bfs.hibernateprojectdemo.benchmark;
+
+import com.bfs.hibernateprojectdemo.domain.Product;
+import com.bfs.hibernateprojectdemo.util.PatchUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fge.jsonpatch.JsonPatch;
+import com.github.fge.jsonpatch.mergepatch.JsonMergePatch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Product PATCH application from the request body to the patched copy.
+ *
+ * compiled parses the body to a tree and goes through PatchUtils (cached plan, fields set directly).
+ * tree reproduces the previous path: body bound to JsonPatch / JsonMergePatch, then
+ * valueToTree, apply and treeToValue. Run with -prof gc to compare allocation per op.
+ *
+ * mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ *     "-Dexec.args=-cp %classpath com.bfs.hibernateprojectdemo.benchmark.PatchBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PatchBenchmark {
+
+    private static final String MERGE = "{\"retailPrice\":54.99,\"quantity\":119}";
+    private static final String JSON_PATCH = "[{\"op\":\"test\",\"path\":\"/quantity\",\"value\":120},"
+            + "{\"op\":\"replace\",\"path\":\"/quantity\",\"value\":119},"
+            + "{\"op\":\"replace\",\"path\":\"/retailPrice\",\"value\":54.99}]";
+
+    @Param({"merge", "json"})
+    public String kind;
+
+    private ObjectMapper mapper;
+    private PatchUtils patchUtils;
+    private Product product;
+    private String body;
+
+    @Setup
+    public void setUp() {
+        mapper = new ObjectMapper();
+        patchUtils = new PatchUtils(mapper);
+        product = new Product();
+        product.setName("Walnut desk lamp");
+        product.setDescription("Warm 2700K LED, 40cm arm");
+        product.setRetailPrice(49.99);
+        product.setWholesalePrice(31.5);
+        product.setQuantity(120);
+        body = "merge".equals(kind) ? MERGE : JSON_PATCH;
+    }
+
+    @Benchmark
+    public Product compiled() throws Exception {
+        JsonNode patch = mapper.readTree(body);
+        return "merge".equals(kind)
+                ? patchUtils.applyMergePatch(patch, product, Product.class)
+                : patchUtils.applyJsonPatch(patch, product, Product.class);
+    }
+
+    @Benchmark
+    public Product tree() throws Exception {
+        JsonNode patched = "merge".equals(kind)
+                ? mapper.readValue(body, JsonMergePatch.class).apply(mapper.valueToTree(product))
+                : mapper.readValue(body, JsonPatch.class).apply(mapper.valueToTree(product));
+        return mapper.treeToValue(patched, Product.class);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PatchBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -2,8 +2,10 @@ package com.bfs.hibernateprojectdemo.controller;
 
 import com.bfs.hibernateprojectdemo.domain.Product;
 import com.bfs.hibernateprojectdemo.service.AuditLogService;
+import com.bfs.hibernateprojectdemo.service.AuditQueryService;
 import com.bfs.hibernateprojectdemo.service.HomePageService;
 import com.bfs.hibernateprojectdemo.service.ProductAnalyticsService;
+import com.bfs.hibernateprojectdemo.service.ProductCatalogCache;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
@@ -39,6 +41,10 @@ class ProductPatchConcurrencyTest {
     @MockBean
     private AuditLogService auditLogService;
     @MockBean
+    private ProductCatalogCache productCatalogCache;
+    @MockBean
+    private AuditQueryService auditQueryService;
+    @MockBean
     private JwtAuthFilter jwtAuthFilter;
     @MockBean
     private JwtService jwtService;
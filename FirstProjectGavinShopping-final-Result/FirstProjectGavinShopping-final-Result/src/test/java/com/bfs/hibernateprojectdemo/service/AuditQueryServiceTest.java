@@ -0,0 +1,101 @@
+package com.bfs.hibernateprojectdemo.service;
+
+import com.bfs.hibernateprojectdemo.domain.AuditLog;
+import com.bfs.hibernateprojectdemo.util.KeysetCursor;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.cfg.Configuration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuditQueryServiceTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 3, 1, 12, 0);
+
+    private final ObjectMapper mapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final AuditLogService auditLogService = Mockito.mock(AuditLogService.class);
+    private SessionFactory sessionFactory;
+    private AuditQueryService service;
+
+    @BeforeEach
+    void setUp() {
+        sessionFactory = new Configuration()
+                .addAnnotatedClass(AuditLog.class)
+                .setProperty("hibernate.connection.url", "jdbc:h2:mem:history-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1")
+                .setProperty("hibernate.connection.username", "sa")
+                .setProperty("hibernate.connection.password", "")
+                .setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect")
+                .setProperty("hibernate.hbm2ddl.auto", "create")
+                .buildSessionFactory();
+        service = new AuditQueryService(sessionFactory, auditLogService, mapper, 500, 100, 1000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        sessionFactory.close();
+    }
+
+    private static AuditLog entry(long version) {
+        AuditLog e = new AuditLog();
+        e.setResourceType("Product");
+        e.setResourceId(1L);
+        e.setUserId(7L);
+        e.setTimestamp(T0.plusMinutes(version));
+        e.setPreviousVersion(version - 1);
+        e.setNewVersion(version);
+        e.setChangeSet("{\"quantity\":{\"from\":" + (version - 1) + ",\"to\":" + version + "}}");
+        return e;
+    }
+
+    private void insert(AuditLog... entries) {
+        try (Session s = sessionFactory.openSession()) {
+            Transaction tx = s.beginTransaction();
+            for (AuditLog e : entries) s.persist(e);
+            tx.commit();
+        }
+    }
+
+    // newVersion of each entry line, then the cursor (or "null")
+    private List<String> page(String cursor, int limit) throws Exception {
+        AuditQueryService.Filter filter = new AuditQueryService.Filter();
+        filter.resourceType = "Product";
+        filter.resourceId = 1L;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.stream(filter, cursor == null ? null : KeysetCursor.decode(cursor), limit, out);
+        List<String> lines = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            JsonNode node = mapper.readTree(line);
+            lines.add(node.has("nextCursor") ? node.get("nextCursor").asText() : node.get("newVersion").asText());
+        }
+        return lines;
+    }
+
+    @Test
+    void firstPageLeadsWithUnshippedEntriesOnce() throws Exception {
+        insert(entry(1), entry(2), entry(3), entry(4));
+        // Version 4 was shipped while the page was being read, 5 and 6 are still local
+        Mockito.when(auditLogService.findLocal("Product", 1L, null)).thenReturn(List.of(entry(4), entry(5), entry(6)));
+
+        List<String> first = page(null, 2);
+        assertEquals(List.of("6", "5", "4", "3"), first.subList(0, 4));
+        String cursor = first.get(4);
+        assertNotEquals("null", cursor);
+
+        // Later pages come from audit_log alone and continue after the cursor
+        assertEquals(List.of("2", "1", "null"), page(cursor, 2));
+    }
+}
@@ -0,0 +1,38 @@
+package com.bfs.hibernateprojectdemo.service;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyServiceTest {
+
+    private final IdempotencyService service = new IdempotencyService(null, 60, 10);
+
+    private static Exception violation(String message, String sqlState, int code, String constraint) {
+        SQLException sql = new SQLException(message, sqlState, code);
+        return new RuntimeException("flush failed", new ConstraintViolationException("could not execute statement", sql, constraint));
+    }
+
+    @Test
+    void onlyTheKeyTablePrimaryKeyCountsAsALostRace() {
+        assertTrue(service.isDuplicateKey(violation(
+                "Duplicate entry 'bob:k1' for key 'idempotency_keys.PRIMARY'", "23000", 1062, "idempotency_keys.PRIMARY")));
+        assertTrue(service.isDuplicateKey(violation(
+                "Duplicate entry 'bob:k1' for key 'PRIMARY'", "23000", 1062, "PRIMARY")));
+        assertTrue(service.isDuplicateKey(violation(
+                "Unique index or primary key violation: \"PUBLIC.PRIMARY_KEY_4 ON PUBLIC.IDEMPOTENCY_KEYS(SCOPEDKEY) VALUES 1\"",
+                "23505", 23505, "PUBLIC.PRIMARY_KEY_4")));
+
+        // Another unique key, a foreign key and a NOT NULL column are real failures
+        assertFalse(service.isDuplicateKey(violation(
+                "Duplicate entry 'bob' for key 'users.username'", "23000", 1062, "users.username")));
+        assertFalse(service.isDuplicateKey(violation(
+                "Cannot add or update a child row: a foreign key constraint fails", "23000", 1452, "fk_line_order")));
+        assertFalse(service.isDuplicateKey(violation(
+                "Column 'requestHash' cannot be null", "23000", 1048, null)));
+        assertFalse(service.isDuplicateKey(new IllegalStateException("boom")));
+    }
+}
@@ -0,0 +1,194 @@
+package com.bfs.hibernateprojectdemo.service;
+
+import com.bfs.hibernateprojectdemo.domain.AuditJournalCheckpoint;
+import com.bfs.hibernateprojectdemo.domain.AuditLog;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalAuditSinkTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 3, 1, 12, 0);
+
+    @TempDir
+    Path dir;
+
+    private SessionFactory sessionFactory;
+
+    @BeforeEach
+    void setUp() {
+        sessionFactory = new Configuration()
+                .addAnnotatedClass(AuditLog.class)
+                .addAnnotatedClass(AuditJournalCheckpoint.class)
+                .setProperty("hibernate.connection.url", "jdbc:h2:mem:journal-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1")
+                .setProperty("hibernate.connection.username", "sa")
+                .setProperty("hibernate.connection.password", "")
+                .setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect")
+                .setProperty("hibernate.hbm2ddl.auto", "create")
+                .buildSessionFactory();
+    }
+
+    @AfterEach
+    void tearDown() {
+        sessionFactory.close();
+    }
+
+    private JournalAuditSink open(int segmentBytes, int indexInterval, int shipBatchSize) throws IOException {
+        JournalAuditSink sink = new JournalAuditSink(sessionFactory, dir.toString(), segmentBytes, indexInterval,
+                shipBatchSize, 200, 1000, 5000);
+        sink.open();
+        return sink;
+    }
+
+    private static AuditLog entry(String type, long id, LocalDateTime at, String changeSet) {
+        AuditLog e = new AuditLog();
+        e.setResourceType(type);
+        e.setResourceId(id);
+        e.setTimestamp(at);
+        e.setChangeSet(changeSet);
+        return e;
+    }
+
+    private List<AuditLog> shippedRows() {
+        try (Session s = sessionFactory.openSession()) {
+            return s.createQuery("from AuditLog order by id", AuditLog.class).list();
+        }
+    }
+
+    private long checkpoint() {
+        try (Session s = sessionFactory.openSession()) {
+            return s.get(AuditJournalCheckpoint.class, dir.toString()).getNextSeq();
+        }
+    }
+
+    private long segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    void recordsDecodeToWhatWasAppended() throws IOException {
+        JournalAuditSink sink = open(4096, 4, 10);
+        AuditLog full = entry("product", 7, LocalDateTime.of(2024, 3, 1, 12, 0, 1, 123_456_789),
+                "{\"name\":{\"from\":\"Tée\",\"to\":\"Tee ☕\"}}");
+        full.setUserId(42L);
+        full.setPreviousVersion(3L);
+        full.setNewVersion(4L);
+        // Nulls and a timestamp before the epoch
+        AuditLog sparse = entry("product", 7, LocalDateTime.of(1969, 12, 31, 23, 59, 59, 1), null);
+        sink.append(full);
+        sink.append(sparse);
+
+        List<AuditLog> out = sink.findLocal("product", 7L, null);
+        assertEquals(2, out.size());
+        assertSameEntry(full, out.get(0));
+        assertSameEntry(sparse, out.get(1));
+    }
+
+    private static void assertSameEntry(AuditLog expected, AuditLog actual) {
+        assertEquals(expected.getResourceType(), actual.getResourceType());
+        assertEquals(expected.getResourceId(), actual.getResourceId());
+        assertEquals(expected.getUserId(), actual.getUserId());
+        assertEquals(expected.getChangeSet(), actual.getChangeSet());
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        assertEquals(expected.getPreviousVersion(), actual.getPreviousVersion());
+        assertEquals(expected.getNewVersion(), actual.getNewVersion());
+    }
+
+    @Test
+    void recoveryStopsAtATornRecordAndReusesItsSequence() throws IOException {
+        JournalAuditSink sink = open(4096, 2, 10);
+        for (int i = 0; i < 5; i++) sink.append(entry("product", 1, T0.plusSeconds(i), "{\"n\":" + i + "}"));
+
+        // Crash mid-append: the last record's length is written but its body is not
+        Path segment;
+        try (Stream<Path> files = Files.list(dir)) {
+            segment = files.collect(Collectors.toList()).get(0);
+        }
+        int recordBytes = 8 + 6 * 8 + 2 + 4 + "product".length() + "{\"n\":0}".length();
+        try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            ch.write(ByteBuffer.wrap("garbage".getBytes(StandardCharsets.UTF_8)), 4L * recordBytes + 8 + 20);
+        }
+
+        JournalAuditSink recovered = open(4096, 2, 10);
+        assertEquals(4L, recovered.snapshot().get("nextSeq"));
+        assertEquals(4, recovered.findLocal("product", 1L, null).size());
+
+        recovered.append(entry("product", 1, T0.plusSeconds(9), "{\"n\":9}"));
+        List<AuditLog> out = recovered.findLocal("product", 1L, null);
+        assertEquals(5, out.size());
+        assertEquals("{\"n\":9}", out.get(4).getChangeSet());
+
+        assertEquals(5, recovered.shipOnce());
+        assertEquals(5L, checkpoint());
+    }
+
+    @Test
+    void shipsAcrossRolledSegmentsExactlyOnce() throws IOException {
+        // Room for three records per segment
+        JournalAuditSink sink = open(256, 2, 4);
+        for (int i = 0; i < 10; i++) sink.append(entry("product", i, T0.plusSeconds(i), "{}"));
+        assertEquals(4L, segmentFiles());
+
+        int total = 0, n;
+        while ((n = sink.shipOnce()) > 0) total += n;
+        assertEquals(0, n);
+        assertEquals(10, total);
+        assertEquals(10L, checkpoint());
+        List<AuditLog> rows = shippedRows();
+        assertEquals(10, rows.size());
+        for (int i = 0; i < 10; i++) assertEquals(i, rows.get(i).getResourceId());
+        // Only the active segment is kept, and its shipped records are no longer local
+        assertEquals(1L, segmentFiles());
+        assertTrue(sink.findLocal("product", 9L, null).isEmpty());
+
+        // A restart resumes after the checkpoint: nothing is shipped twice and numbering continues
+        JournalAuditSink restarted = open(256, 2, 4);
+        assertEquals(0, restarted.shipOnce());
+        restarted.append(entry("product", 10, T0.plusSeconds(10), "{}"));
+        assertEquals(1, restarted.shipOnce());
+        assertEquals(11L, checkpoint());
+        assertEquals(11, shippedRows().size());
+    }
+
+    @Test
+    void findLocalSeeksByResourceAndTime() throws IOException {
+        JournalAuditSink sink = open(1024, 4, 10);
+        for (int i = 0; i < 40; i++) {
+            sink.append(entry(i % 2 == 0 ? "product" : "order", i % 4 < 2 ? 1 : 2, T0.plusMinutes(i), "{}"));
+        }
+        assertTrue(segmentFiles() > 1);
+
+        List<AuditLog> product1 = sink.findLocal("product", 1L, null);
+        assertEquals(10, product1.size());
+        for (int i = 0; i < product1.size(); i++) assertEquals(T0.plusMinutes(4L * i), product1.get(i).getTimestamp());
+
+        List<AuditLog> recent = sink.findLocal("product", 1L, T0.plusMinutes(20));
+        assertEquals(5, recent.size());
+        assertEquals(T0.plusMinutes(20), recent.get(0).getTimestamp());
+        assertEquals(T0.plusMinutes(36), recent.get(4).getTimestamp());
+
+        assertEquals(10, sink.findLocal("order", 2L, T0).size());
+        assertTrue(sink.findLocal("order", 2L, T0.plusMinutes(40)).isEmpty());
+        assertTrue(sink.findLocal("product", 3L, null).isEmpty());
+    }
+}
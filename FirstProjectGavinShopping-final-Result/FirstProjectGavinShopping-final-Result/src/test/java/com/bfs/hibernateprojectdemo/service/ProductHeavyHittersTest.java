@@ -0,0 +1,58 @@
+package com.bfs.hibernateprojectdemo.service;
+
+import com.bfs.hibernateprojectdemo.domain.OrderLine;
+import com.bfs.hibernateprojectdemo.dto.ApproxRanking;
+import com.bfs.hibernateprojectdemo.service.ProductHeavyHitters.Metric;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductHeavyHittersTest {
+
+    private final ProductHeavyHitters hitters = new ProductHeavyHitters(null, 100, 0.001, 0.01);
+
+    private static OrderLine line(long productId, int quantity) {
+        OrderLine line = new OrderLine();
+        line.setProductId(productId);
+        line.setProductNameAtPurchase("p" + productId);
+        line.setQuantity(quantity);
+        return line;
+    }
+
+    private static Object[] row(long orderId, long productId, int quantity) {
+        return new Object[]{orderId, productId, "p" + productId, quantity};
+    }
+
+    @Test
+    void ordersCompletedWhileSeedingAreCountedOnce() {
+        // Order 1 is in the seed's snapshot; order 3 completes after it was taken
+        hitters.record(1L, List.of(line(10, 2)));
+        Iterator<Object[]> rows = Arrays.asList(row(1, 10, 2), row(2, 10, 1), row(2, 20, 5)).iterator();
+        hitters.record(3L, List.of(line(20, 4)));
+        hitters.seed(rows);
+        // Recorded live once seeding is done
+        hitters.record(4L, List.of(line(10, 1)));
+
+        ApproxRanking frequent = hitters.top(Metric.FREQUENT, 10);
+        assertEquals(5, frequent.getTotal());
+        assertEquals(10L, frequent.getItems().get(0).getProductId());
+        assertEquals(3, frequent.getItems().get(0).getEstimate());
+        assertEquals(13, hitters.top(Metric.POPULAR, 10).getTotal());
+    }
+
+    @Test
+    void heldBackOrdersSurviveAFailedSeed() {
+        hitters.record(1L, List.of(line(10, 2)));
+        Iterator<Object[]> failing = new Iterator<Object[]>() {
+            public boolean hasNext() { return true; }
+            public Object[] next() { throw new IllegalStateException("connection lost"); }
+        };
+        assertThrows(IllegalStateException.class, () -> hitters.seed(failing));
+        hitters.record(2L, List.of(line(10, 1)));
+        assertEquals(2, hitters.top(Metric.FREQUENT, 10).getTotal());
+    }
+}
@@ -0,0 +1,74 @@
+package com.bfs.hibernateprojectdemo.service;
+
+import com.bfs.hibernateprojectdemo.dto.ProductRankDto;
+import com.bfs.hibernateprojectdemo.service.ProductLeaderboards.Ranking;
+import com.bfs.hibernateprojectdemo.service.ProductLeaderboards.Score;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductLeaderboardsTest {
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private final ProductLeaderboards boards = new ProductLeaderboards(null);
+
+    private static Score score(long id, long orderCount, long units, double profit, long minutes) {
+        return new Score(id, "p" + id, orderCount, units, profit, T0.plusMinutes(minutes));
+    }
+
+    private List<Long> ids(Ranking ranking, int n) {
+        return boards.top(ranking, n).stream().map(ProductRankDto::getProductId).collect(Collectors.toList());
+    }
+
+    @Test
+    void ranksByScoreThenProductId() {
+        boards.update(score(3, 2, 10, 5.0, 100));
+        boards.update(score(1, 2, 30, 1.0, 300));
+        boards.update(score(2, 5, 20, 9.0, 200));
+
+        assertEquals(Arrays.asList(2L, 1L, 3L), ids(Ranking.FREQUENT, 10));
+        assertEquals(Arrays.asList(1L, 2L, 3L), ids(Ranking.POPULAR, 10));
+        assertEquals(Arrays.asList(2L, 3L), ids(Ranking.PROFIT, 2));
+        assertEquals(Arrays.asList(1L, 2L, 3L), ids(Ranking.RECENT, 3));
+    }
+
+    @Test
+    void newerSnapshotReplacesOlderAndStaleOneIsIgnored() {
+        boards.update(score(1, 1, 1, 1.0, 1));
+        boards.update(score(2, 2, 2, 2.0, 2));
+        boards.update(score(1, 3, 3, 3.0, 3));
+        boards.update(score(1, 1, 1, 1.0, 1)); // late publish of an older row
+
+        assertEquals(Arrays.asList(1L, 2L), ids(Ranking.FREQUENT, 10));
+        assertEquals(Arrays.asList(1L, 2L), ids(Ranking.PROFIT, 10));
+    }
+
+    @Test
+    void readersNeverSeeAProductTwiceOrMissing() throws Exception {
+        for (long id = 1; id <= 20; id++) boards.update(score(id, 1, 1, 1.0, 1));
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        CountDownLatch done = new CountDownLatch(1);
+        pool.submit(() -> {
+            for (int i = 2; i < 20_000; i++) boards.update(score(7, i, i, i, i));
+            done.countDown();
+        });
+        while (done.getCount() > 0) {
+            List<Long> top = ids(Ranking.POPULAR, 100);
+            assertEquals(20, top.size());
+            assertEquals(20, top.stream().distinct().count());
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(7L, ids(Ranking.POPULAR, 1).get(0));
+        assertEquals("p7", boards.top(Ranking.POPULAR, 1).get(0).getName());
+    }
+}
@@ -0,0 +1,182 @@
+package com.bfs.hibernateprojectdemo.service;
+
+import com.bfs.hibernateprojectdemo.domain.AuditLog;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueuedAuditSinkTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 3, 1, 12, 0);
+
+    @TempDir
+    Path dir;
+
+    private SessionFactory sessionFactory;
+    private Path spillFile;
+
+    @BeforeEach
+    void setUp() {
+        sessionFactory = new Configuration()
+                .addAnnotatedClass(AuditLog.class)
+                .setProperty("hibernate.connection.url", "jdbc:h2:mem:queue-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1")
+                .setProperty("hibernate.connection.username", "sa")
+                .setProperty("hibernate.connection.password", "")
+                .setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect")
+                .setProperty("hibernate.hbm2ddl.auto", "create")
+                .buildSessionFactory();
+        spillFile = dir.resolve("audit-spill.ndjson");
+    }
+
+    @AfterEach
+    void tearDown() {
+        sessionFactory.close();
+    }
+
+    // Capacity 4; the writer is only started where a test says so
+    private QueuedAuditSink sink(QueuedAuditSink.OverflowPolicy policy) {
+        return new QueuedAuditSink(sessionFactory, 4, 2, 10, policy, spillFile.toString(), 0, 5000);
+    }
+
+    private static AuditLog entry(long id) {
+        AuditLog e = new AuditLog();
+        e.setResourceType("product");
+        e.setResourceId(id);
+        e.setTimestamp(T0.plusSeconds(id));
+        e.setChangeSet("{\"n\":" + id + "}");
+        return e;
+    }
+
+    private List<Long> writtenIds() {
+        try (Session s = sessionFactory.openSession()) {
+            return s.createQuery("select a.resourceId from AuditLog a order by a.resourceId", Long.class).list();
+        }
+    }
+
+    @Test
+    void dropOldestKeepsTheNewestEntries() throws Exception {
+        QueuedAuditSink sink = sink(QueuedAuditSink.OverflowPolicy.DROP_OLDEST);
+        for (long i = 0; i < 6; i++) sink.append(entry(i));
+        assertEquals(2L, sink.snapshot().get("dropped"));
+        assertEquals(4, sink.snapshot().get("queueDepth"));
+
+        sink.start();
+        sink.shutdown();
+        assertEquals(List.of(2L, 3L, 4L, 5L), writtenIds());
+        assertFalse(Files.exists(spillFile));
+    }
+
+    @Test
+    void spillWritesOverflowToTheFileAndReplaysIt() throws Exception {
+        QueuedAuditSink sink = sink(QueuedAuditSink.OverflowPolicy.SPILL);
+        for (long i = 0; i < 6; i++) sink.append(entry(i));
+        assertEquals(2L, sink.snapshot().get("spilled"));
+        assertEquals(2, Files.readAllLines(spillFile).size());
+
+        assertTrue(sink.replaySpillIfDue());
+        assertEquals(List.of(4L, 5L), writtenIds());
+        assertFalse(Files.exists(spillFile));
+
+        sink.start();
+        sink.shutdown();
+        assertEquals(List.of(0L, 1L, 2L, 3L, 4L, 5L), writtenIds());
+        assertEquals(2L, sink.snapshot().get("replayed"));
+    }
+
+    @Test
+    void blockWaitsForTheWriter() throws Exception {
+        QueuedAuditSink sink = sink(QueuedAuditSink.OverflowPolicy.BLOCK);
+        for (long i = 0; i < 4; i++) sink.append(entry(i));
+        Thread producer = new Thread(() -> sink.append(entry(4)));
+        producer.start();
+        producer.join(200);
+        assertTrue(producer.isAlive());
+
+        sink.start();
+        producer.join(5000);
+        assertFalse(producer.isAlive());
+        sink.shutdown();
+        assertEquals(List.of(0L, 1L, 2L, 3L, 4L), writtenIds());
+        assertEquals(0L, sink.snapshot().get("dropped"));
+        assertEquals(0L, sink.snapshot().get("spilled"));
+    }
+
+    @Test
+    void shutdownSpillsWhatAStuckWriterLeftQueued() throws Exception {
+        // The writer hangs on its first insert, as if the database stopped answering
+        CountDownLatch release = new CountDownLatch(1);
+        SessionFactory stuck = Mockito.mock(SessionFactory.class);
+        Mockito.when(stuck.openSession()).thenAnswer(inv -> {
+            release.await();
+            throw new IllegalStateException("database gone");
+        });
+        QueuedAuditSink sink = new QueuedAuditSink(stuck, 8, 1, 10, QueuedAuditSink.OverflowPolicy.SPILL,
+                spillFile.toString(), 0, 200);
+        try {
+            sink.start();
+            sink.append(entry(0));
+            while (sink.snapshot().get("queueDepth").equals(1)) Thread.sleep(5);
+            for (long i = 1; i < 4; i++) sink.append(entry(i));
+
+            sink.shutdown();
+            assertEquals(3, Files.readAllLines(spillFile).size());
+            assertEquals(3L, sink.snapshot().get("spilled"));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void replaySkipsATornLastLineAndKeepsLaterSpills() throws Exception {
+        // Three complete lines and one cut off by a crash mid-spill
+        QueuedAuditSink first = sink(QueuedAuditSink.OverflowPolicy.SPILL);
+        for (long i = 0; i < 7; i++) first.append(entry(i));
+        String torn = Files.readString(spillFile) + "{\"resourceType\":\"prod";
+        Files.writeString(spillFile, torn);
+
+        // After the restart the next spill starts on a fresh line
+        QueuedAuditSink sink = sink(QueuedAuditSink.OverflowPolicy.SPILL);
+        for (long i = 10; i < 15; i++) sink.append(entry(i));
+        assertEquals(5, Files.readAllLines(spillFile).size());
+
+        assertTrue(sink.replaySpillIfDue());
+        assertEquals(List.of(4L, 5L, 6L, 14L), writtenIds());
+        assertEquals(1L, sink.snapshot().get("dropped"));
+        assertFalse(Files.exists(spillFile));
+        assertFalse(Files.exists(dir.resolve("audit-spill.ndjson.replaying")));
+        assertFalse(Files.exists(dir.resolve("audit-spill.ndjson.replayed")));
+
+        // Nothing left to replay, so nothing is inserted twice
+        assertFalse(sink.replaySpillIfDue());
+        assertEquals(4, writtenIds().size());
+    }
+
+    @Test
+    void interruptedReplayResumesAfterTheSavedPosition() throws Exception {
+        QueuedAuditSink first = sink(QueuedAuditSink.OverflowPolicy.SPILL);
+        for (long i = 0; i < 9; i++) first.append(entry(i));
+        // A crash after the first batch (lines 1-2) was inserted
+        assertEquals(5, Files.readAllLines(spillFile, StandardCharsets.UTF_8).size());
+        Files.move(spillFile, dir.resolve("audit-spill.ndjson.replaying"));
+        Files.writeString(dir.resolve("audit-spill.ndjson.replayed"), "2");
+
+        QueuedAuditSink sink = sink(QueuedAuditSink.OverflowPolicy.SPILL);
+        assertTrue(sink.replaySpillIfDue());
+        assertEquals(List.of(6L, 7L, 8L), writtenIds());
+        assertEquals(3L, sink.snapshot().get("replayed"));
+    }
+}
@@ -0,0 +1,68 @@
+package com.bfs.hibernateprojectdemo.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedMpmcQueueTest {
+
+    @Test
+    void isFifoAndRefusesWhenFull() {
+        BoundedMpmcQueue<Integer> q = new BoundedMpmcQueue<>(3);
+        assertEquals(4, q.capacity());
+        for (int i = 0; i < 4; i++) assertTrue(q.offer(i));
+        assertFalse(q.offer(4));
+        assertEquals(0, q.poll());
+        assertTrue(q.offer(4));
+        List<Integer> out = new ArrayList<>();
+        assertEquals(4, q.drainTo(out, 10));
+        assertEquals(List.of(1, 2, 3, 4), out);
+        assertNull(q.poll());
+        assertTrue(q.isEmpty());
+    }
+
+    @Test
+    void concurrentProducersLoseAndDuplicateNothing() throws Exception {
+        int producers = 4;
+        int perProducer = 50_000;
+        BoundedMpmcQueue<Integer> q = new BoundedMpmcQueue<>(64);
+        ExecutorService pool = Executors.newFixedThreadPool(producers);
+        CountDownLatch done = new CountDownLatch(producers);
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            pool.submit(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    while (!q.offer(base + i)) Thread.yield();
+                }
+                done.countDown();
+            });
+        }
+        Set<Integer> seen = new HashSet<>();
+        int[] lastPerProducer = new int[producers];
+        java.util.Arrays.fill(lastPerProducer, -1);
+        while (seen.size() < producers * perProducer) {
+            Integer v = q.poll();
+            if (v == null) {
+                Thread.yield();
+                continue;
+            }
+            assertTrue(seen.add(v), "duplicate " + v);
+            // Each producer's elements come out in the order it offered them
+            int p = v / perProducer;
+            assertTrue(v > lastPerProducer[p]);
+            lastPerProducer[p] = v;
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertNull(q.poll());
+        pool.shutdown();
+    }
+}
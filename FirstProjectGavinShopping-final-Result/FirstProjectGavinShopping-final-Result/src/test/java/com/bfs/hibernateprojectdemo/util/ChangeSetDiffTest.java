@@ -0,0 +1,55 @@
+package com.bfs.hibernateprojectdemo.util;
+
+import com.bfs.hibernateprojectdemo.domain.Product;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChangeSetDiffTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ChangeSetDiff<Product> diff = ChangeSetDiff.builder(Product.class)
+            .text("name", Product::getName)
+            .text("description", Product::getDescription)
+            .decimal("retailPrice", Product::getRetailPrice)
+            .integer("quantity", Product::getQuantity)
+            .build(mapper);
+
+    private static Product product(String name, String description, double price, int quantity) {
+        Product p = new Product();
+        p.setName(name);
+        p.setDescription(description);
+        p.setRetailPrice(price);
+        p.setQuantity(quantity);
+        return p;
+    }
+
+    @Test
+    void onlyChangedFieldsAreWritten() {
+        Product before = product("Lamp", "desk lamp", 19.5, 3);
+        assertEquals("{}", diff.diff(before, product("Lamp", "desk lamp", 19.5, 3)));
+        assertEquals("{\"retailPrice\":{\"from\":19.5,\"to\":21.0},\"quantity\":{\"from\":3,\"to\":0}}",
+                diff.diff(before, product("Lamp", "desk lamp", 21.0, 0)));
+        assertEquals("{\"description\":{\"from\":\"desk lamp\",\"to\":null}}",
+                diff.diff(before, product("Lamp", null, 19.5, 3)));
+    }
+
+    @Test
+    void stringsAreEscaped() throws Exception {
+        String awkward = "say \"hi\" \\ to\n\ttab \u0001 and  ";
+        JsonNode node = mapper.readTree(diff.diff(product("a", null, 0, 0), product(awkward, null, 0, 0)));
+        assertEquals("a", node.at("/name/from").asText());
+        assertEquals(awkward, node.at("/name/to").asText());
+    }
+
+    @Test
+    void reusedGeneratorStartsEachDiffClean() throws Exception {
+        Product a = product("a", null, 1, 1);
+        for (int i = 0; i < 3; i++) {
+            String out = diff.diff(a, product("b" + i, null, 1, 1));
+            assertEquals("b" + i, mapper.readTree(out).at("/name/to").asText());
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.bfs.hibernateprojectdemo.util;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DuplicateKeysTest {
+
+    private static final String KEY = "uk_watchlist_user_product";
+
+    private static Exception violation(String message, String sqlState, int code, String constraint) {
+        SQLException sql = new SQLException(message, sqlState, code);
+        return new RuntimeException("commit failed", new ConstraintViolationException("could not execute statement", sql, constraint));
+    }
+
+    @Test
+    void onlyADuplicateOnTheNamedKeyMatches() {
+        assertTrue(DuplicateKeys.isDuplicateOn(violation(
+                "Duplicate entry '1-2' for key 'watchlist.uk_watchlist_user_product'", "23000", 1062,
+                "watchlist.uk_watchlist_user_product"), KEY));
+        assertTrue(DuplicateKeys.isDuplicateOn(violation(
+                "Unique index or primary key violation: \"PUBLIC.UK_WATCHLIST_USER_PRODUCT_INDEX_9 ON PUBLIC.WATCHLIST(USER_ID, PRODUCT_ID)\"",
+                "23505", 23505, "\"PUBLIC.UK_WATCHLIST_USER_PRODUCT_INDEX_9 ON PUBLIC.WATCHLIST(USER_ID, PRODUCT_ID)\""), KEY));
+
+        // Another unique key, a foreign key and a NOT NULL column are real failures
+        assertFalse(DuplicateKeys.isDuplicateOn(violation(
+                "Duplicate entry '5' for key 'watchlist.PRIMARY'", "23000", 1062, "watchlist.PRIMARY"), KEY));
+        assertFalse(DuplicateKeys.isDuplicateOn(violation(
+                "Cannot add or update a child row: a foreign key constraint fails (uk_watchlist_user_product)", "23000", 1452,
+                "fk_watchlist_product"), KEY));
+        assertFalse(DuplicateKeys.isDuplicateOn(violation(
+                "Column 'user_id' cannot be null", "23000", 1048, null), KEY));
+        assertFalse(DuplicateKeys.isDuplicateOn(new IllegalStateException("boom"), KEY));
+    }
+}
@@ -1,8 +1,10 @@
 package com.bfs.hibernateprojectdemo.util;
 
 import com.bfs.hibernateprojectdemo.domain.Product;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.fge.jsonpatch.JsonPatch;
+import com.github.fge.jsonpatch.JsonPatchException;
 import com.github.fge.jsonpatch.mergepatch.JsonMergePatch;
 import org.junit.jupiter.api.Test;
 
@@ -75,4 +77,88 @@ class PatchUtilsTest {
 
         assertEquals(Arrays.asList("c","x","b"), out.tags);
     }
-}
\ No newline at end of file
+
+    private static Product product() {
+        Product p = new Product();
+        p.setName("Lamp");
+        p.setDescription("desk lamp");
+        p.setRetailPrice(19.5);
+        p.setWholesalePrice(11);
+        p.setQuantity(7);
+        return p;
+    }
+
+    // What the tree path returns, as a tree
+    private JsonNode viaTree(JsonNode patched) throws Exception {
+        return mapper.valueToTree(mapper.treeToValue(patched, Product.class));
+    }
+
+    @Test
+    void compiledPlansMatchTheTreeRoundTrip() throws Exception {
+        assertTrue(new PatchPlans(mapper).supports(Product.class));
+        assertFalse(new PatchPlans(mapper).supports(NestedDto.class));
+
+        String[] mergePatches = {
+                "{\"name\":\"New\",\"retailPrice\":12}",
+                "{\"description\":null,\"quantity\":0}",
+                "{\"quantity\":null}",
+                "{\"retailPrice\":\"21.5\"}",
+                "{}",
+        };
+        for (String body : mergePatches) {
+            JsonNode node = mapper.readTree(body);
+            Product target = product();
+            Product out = utils.applyMergePatch(node, target, Product.class);
+            JsonNode expected = JsonMergePatch.fromJson(node).apply(mapper.valueToTree(product()));
+            assertEquals(viaTree(expected), mapper.valueToTree(out), body);
+            assertEquals(mapper.valueToTree(product()), mapper.valueToTree(target), "target untouched: " + body);
+        }
+
+        String[] jsonPatches = {
+                "[{\"op\":\"replace\",\"path\":\"/name\",\"value\":\"New\"}]",
+                "[{\"op\":\"test\",\"path\":\"/retailPrice\",\"value\":19.50},"
+                        + "{\"op\":\"add\",\"path\":\"/quantity\",\"value\":8},"
+                        + "{\"op\":\"test\",\"path\":\"/quantity\",\"value\":8.0}]",
+                "[{\"op\":\"remove\",\"path\":\"/description\"},{\"op\":\"remove\",\"path\":\"/quantity\"}]",
+                "[{\"op\":\"copy\",\"from\":\"/name\",\"path\":\"/description\"}]",
+                "[{\"op\":\"replace\",\"path\":\"/quantity\",\"value\":2.9}]",
+        };
+        // These shapes are compiled rather than sent down the tree path
+        PatchPlans plans = new PatchPlans(mapper);
+        assertNotNull(plans.applyMergePatch(mapper.readTree(mergePatches[1]), product(), Product.class));
+        assertNotNull(plans.applyJsonPatch(mapper.readTree(jsonPatches[1]), product(), Product.class));
+
+        for (String body : jsonPatches) {
+            JsonNode node = mapper.readTree(body);
+            Product target = product();
+            Product out = utils.applyJsonPatch(node, target, Product.class);
+            JsonNode expected = JsonPatch.fromJson(node).apply(mapper.valueToTree(product()));
+            assertEquals(viaTree(expected), mapper.valueToTree(out), body);
+            assertEquals(mapper.valueToTree(product()), mapper.valueToTree(target), "target untouched: " + body);
+        }
+    }
+
+    @Test
+    void failedTestOpReportsLikeTheTreePath() throws Exception {
+        JsonNode node = mapper.readTree("[{\"op\":\"test\",\"path\":\"/name\",\"value\":\"Other\"},"
+                + "{\"op\":\"replace\",\"path\":\"/name\",\"value\":\"New\"}]");
+        assertThrows(JsonPatchException.class, () -> utils.applyJsonPatch(node, product(), Product.class));
+        JsonNode unknown = mapper.readTree("[{\"op\":\"replace\",\"path\":\"/nope\",\"value\":1}]");
+        assertThrows(JsonPatchException.class, () -> utils.applyJsonPatch(unknown, product(), Product.class));
+    }
+
+    @Test
+    void opsAfterRemovingAPropertyFailLikeTheTreePath() throws Exception {
+        String[] jsonPatches = {
+                "[{\"op\":\"remove\",\"path\":\"/name\"},{\"op\":\"replace\",\"path\":\"/name\",\"value\":\"B\"}]",
+                "[{\"op\":\"remove\",\"path\":\"/description\"},{\"op\":\"remove\",\"path\":\"/description\"}]",
+                "[{\"op\":\"remove\",\"path\":\"/quantity\"},{\"op\":\"test\",\"path\":\"/quantity\",\"value\":0}]",
+        };
+        PatchPlans plans = new PatchPlans(mapper);
+        for (String body : jsonPatches) {
+            JsonNode node = mapper.readTree(body);
+            assertNull(plans.applyJsonPatch(node, product(), Product.class), body);
+            assertThrows(JsonPatchException.class, () -> utils.applyJsonPatch(node, product(), Product.class), body);
+        }
+    }
+}
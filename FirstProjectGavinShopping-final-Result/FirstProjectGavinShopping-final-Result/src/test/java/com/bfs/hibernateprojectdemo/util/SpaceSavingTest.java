@@ -0,0 +1,58 @@
+package com.bfs.hibernateprojectdemo.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpaceSavingTest {
+
+    @Test
+    void heavyKeysAreMonitoredWithinTheirErrorBounds() {
+        SpaceSaving<Long> summary = new SpaceSaving<>(20);
+        CountMinSketch sketch = new CountMinSketch(0.01, 0.01);
+        Map<Long, Long> exact = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 50_000; i++) {
+            // Keys 0..4 take roughly half the stream; the rest is spread over 10,000 keys
+            long key = random.nextBoolean() ? random.nextInt(5) : 5 + random.nextInt(10_000);
+            long weight = 1 + random.nextInt(3);
+            summary.offer(key, weight);
+            sketch.add(key, weight);
+            exact.merge(key, weight, Long::sum);
+        }
+
+        List<SpaceSaving.Counter<Long>> top = summary.top(5);
+        assertEquals(5, top.size());
+        for (SpaceSaving.Counter<Long> c : top) {
+            assertTrue(c.getKey() < 5, "unexpected heavy key " + c.getKey());
+            long truth = exact.get(c.getKey());
+            assertTrue(c.getCount() >= truth && c.getCount() - c.getError() <= truth);
+            assertTrue(c.getCount() - truth <= summary.errorBound());
+            assertTrue(sketch.estimate(c.getKey()) >= truth);
+            assertTrue(sketch.estimate(c.getKey()) - truth <= sketch.errorBound());
+        }
+        for (int i = 1; i < top.size(); i++) {
+            assertTrue(top.get(i - 1).getCount() >= top.get(i).getCount());
+        }
+    }
+
+    @Test
+    void evictsTheSmallestCounterAndInheritsItsCount() {
+        SpaceSaving<String> summary = new SpaceSaving<>(2);
+        assertNull(summary.offer("a", 5));
+        assertNull(summary.offer("b", 2));
+        assertEquals("b", summary.offer("c", 1));
+
+        SpaceSaving.Counter<String> c = summary.top(2).get(1);
+        assertEquals("c", c.getKey());
+        assertEquals(3, c.getCount());
+        assertEquals(2, c.getError());
+        assertFalse(summary.contains("b"));
+        assertEquals(8, summary.getTotal());
+    }
+}